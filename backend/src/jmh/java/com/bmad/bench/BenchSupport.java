@@ -0,0 +1,77 @@
+package com.bmad.bench;
+
+import com.bmad.config.FusionConfig;
+import com.bmad.config.VectorIndexConfig;
+import com.bmad.service.EmbeddingService;
+import com.bmad.service.ImageBlobStore;
+import com.bmad.service.IndexService;
+import com.bmad.service.RankFusion;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试的公共装配：在临时目录中脱离 Spring 容器构建服务实例。
+ */
+public final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    /**
+     * 构建一个写入临时目录、关闭写前日志的 IndexService，组提交参数与 application.yml 的默认值一致。
+     *
+     * @param root 临时根目录，索引与图片存储都放在其下
+     * @param embeddingService 向量化实现（基准中使用确定性替身）
+     */
+    public static IndexService newIndexService(Path root, EmbeddingService embeddingService) throws IOException {
+        FusionConfig fusionConfig = new FusionConfig();
+        ImageBlobStore blobStore = new ImageBlobStore(root.resolve("blob_store").toString());
+        blobStore.init();
+
+        IndexService indexService = new IndexService();
+        set(indexService, "embeddingService", embeddingService);
+        set(indexService, "imageBlobStore", blobStore);
+        set(indexService, "fusionConfig", fusionConfig);
+        set(indexService, "rankFusion", new RankFusion(fusionConfig));
+        set(indexService, "vectorIndexConfig", new VectorIndexConfig());
+        set(indexService, "indexPath", root.resolve("lucene_index").toString());
+        set(indexService, "maxStaleSec", 1.0);
+        set(indexService, "minStaleSec", 0.1);
+        set(indexService, "maxCommitDelayMs", 1000L);
+        set(indexService, "maxPendingDocs", 5000);
+        set(indexService, "walEnabled", false);
+        // 基准测量的是实际检索路径，关闭结果缓存
+        set(indexService, "queryCacheEntries", 0);
+        indexService.init();
+        return indexService;
+    }
+
+    /**
+     * 为 @Value / @Autowired 注入的私有字段赋值。
+     */
+    public static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法设置字段 " + name, e);
+        }
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bmad.bench;
+
+import com.bmad.model.DocumentSegment;
+import com.bmad.service.DocumentService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准语料。
+ *
+ * - synthetic: 按固定种子生成，词频服从近似 Zipf 分布，规模由文件数与每文件段落数控制。
+ * - 其他取值视为目录路径 (fixture)：目录中的文件用 DocumentService 解析，再按需要的文件数循环复制。
+ */
+public final class Corpus {
+
+    private static final long SEED = 20240601L;
+    private static final int VOCABULARY = 5000;
+
+    private final Map<String, List<DocumentSegment>> files;
+    private final List<String> vocabulary;
+
+    private Corpus(Map<String, List<DocumentSegment>> files, List<String> vocabulary) {
+        this.files = files;
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * @param source "synthetic" 或 fixture 目录路径
+     * @param fileCount 文件数
+     * @param segmentsPerFile 每个文件的段落数（仅 synthetic 使用）
+     */
+    public static Corpus load(String source, int fileCount, int segmentsPerFile) throws IOException {
+        return "synthetic".equals(source) ? synthetic(fileCount, segmentsPerFile) : fixture(Paths.get(source), fileCount);
+    }
+
+    public static Corpus synthetic(int fileCount, int segmentsPerFile) {
+        Random random = new Random(SEED);
+        List<String> vocabulary = new ArrayList<>(VOCABULARY);
+        for (int i = 0; i < VOCABULARY; i++) {
+            vocabulary.add(word(random));
+        }
+
+        Map<String, List<DocumentSegment>> files = new LinkedHashMap<>();
+        for (int f = 0; f < fileCount; f++) {
+            List<DocumentSegment> segments = new ArrayList<>(segmentsPerFile);
+            for (int s = 0; s < segmentsPerFile; s++) {
+                StringBuilder text = new StringBuilder();
+                int sentences = 4 + random.nextInt(6);
+                for (int n = 0; n < sentences; n++) {
+                    int words = 8 + random.nextInt(12);
+                    for (int w = 0; w < words; w++) {
+                        String token = vocabulary.get(zipf(random));
+                        text.append(w == 0 ? Character.toUpperCase(token.charAt(0)) + token.substring(1) : token);
+                        text.append(w == words - 1 ? ". " : " ");
+                    }
+                }
+                DocumentSegment segment = new DocumentSegment(text.toString().trim());
+                segment.addMetadata("source_type", "txt");
+                segment.addMetadata("paragraph_index", s + 1);
+                segments.add(segment);
+            }
+            files.put("synthetic-" + f + ".txt", segments);
+        }
+        return new Corpus(files, vocabulary);
+    }
+
+    private static Corpus fixture(Path dir, int fileCount) throws IOException {
+        DocumentService documentService = new DocumentService();
+        documentService.init();
+        List<Path> sources;
+        try (Stream<Path> stream = Files.list(dir)) {
+            sources = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+        if (sources.isEmpty()) {
+            throw new IOException("fixture 目录为空: " + dir);
+        }
+
+        List<List<DocumentSegment>> parsed = new ArrayList<>();
+        List<String> vocabulary = new ArrayList<>();
+        for (Path source : sources) {
+            List<DocumentSegment> segments = documentService.parseDocument(source.getFileName().toString(), source);
+            parsed.add(segments);
+            for (DocumentSegment segment : segments) {
+                for (String token : segment.getContent().split("[^\\p{L}\\p{N}]+")) {
+                    if (token.length() > 3 && vocabulary.size() < VOCABULARY) {
+                        vocabulary.add(token.toLowerCase());
+                    }
+                }
+            }
+        }
+        documentService.shutdown();
+
+        Map<String, List<DocumentSegment>> files = new LinkedHashMap<>();
+        for (int f = 0; f < fileCount; f++) {
+            int index = f % sources.size();
+            files.put("copy" + (f / sources.size()) + "-" + sources.get(index).getFileName(), parsed.get(index));
+        }
+        return new Corpus(files, vocabulary);
+    }
+
+    public Map<String, List<DocumentSegment>> files() {
+        return files;
+    }
+
+    /**
+     * 按固定种子生成查询：单词、短语与较长的自然语言问句混合。
+     */
+    public List<String> queries(int count) {
+        Random random = new Random(SEED + 1);
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int words = switch (i % 3) {
+                case 0 -> 1;
+                case 1 -> 2 + random.nextInt(2);
+                default -> 5 + random.nextInt(4);
+            };
+            StringBuilder query = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    query.append(' ');
+                }
+                query.append(vocabulary.get(zipf(random) % vocabulary.size()));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    private static String word(Random random) {
+        int length = 3 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    // 近似 Zipf：低序号的词出现概率更高
+    private static int zipf(Random random) {
+        double u = random.nextDouble();
+        return (int) Math.min(VOCABULARY - 1, Math.floor(Math.pow(VOCABULARY, u)) - 1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.bmad.bench;
+
+import com.bmad.model.DocumentSegment;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成解析基准用的 PDF / DOCX / PPTX / TXT 文件，构造方式与 DocumentServiceTest 一致，
+ * 文本来自 {@link Corpus} 的合成语料，内容由固定种子决定。
+ */
+public final class Fixtures {
+
+    private static final int PDF_LINE_CHARS = 90;
+    private static final int PDF_LINES_PER_PAGE = 45;
+
+    private Fixtures() {
+    }
+
+    /**
+     * 在目录中生成指定格式的文件。
+     *
+     * @param dir 输出目录
+     * @param format pdf / docx / pptx / txt
+     * @param units 规模：PDF 为页数，PPTX 为幻灯片数，DOCX / TXT 为段落数
+     * @return 生成的文件路径，文件名为 fixture.{format}
+     */
+    public static Path create(Path dir, String format, int units) throws IOException {
+        Path path = dir.resolve("fixture." + format);
+        List<String> paragraphs = paragraphs(units);
+        switch (format) {
+            case "pdf" -> writePdf(path, paragraphs);
+            case "docx" -> writeDocx(path, paragraphs);
+            case "pptx" -> writePptx(path, paragraphs);
+            case "txt" -> Files.writeString(path, String.join("\n\n", paragraphs), StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("不支持的 fixture 格式: " + format);
+        }
+        return path;
+    }
+
+    private static List<String> paragraphs(int count) {
+        List<String> paragraphs = new ArrayList<>(count);
+        for (DocumentSegment segment : Corpus.synthetic(1, count).files().values().iterator().next()) {
+            paragraphs.add(segment.getContent());
+        }
+        return paragraphs;
+    }
+
+    // 每页一段；Type1 字体的 showText 不会自动换行，按固定字符数折行
+    private static void writePdf(Path path, List<String> paragraphs) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (String paragraph : paragraphs) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 10);
+                    cs.setLeading(14);
+                    cs.newLineAtOffset(40, 750);
+                    int lines = 0;
+                    for (int start = 0; start < paragraph.length() && lines < PDF_LINES_PER_PAGE; start += PDF_LINE_CHARS, lines++) {
+                        cs.showText(paragraph.substring(start, Math.min(paragraph.length(), start + PDF_LINE_CHARS)));
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            doc.save(path.toFile());
+        }
+    }
+
+    private static void writeDocx(Path path, List<String> paragraphs) throws IOException {
+        try (XWPFDocument doc = new XWPFDocument(); OutputStream out = Files.newOutputStream(path)) {
+            for (String paragraph : paragraphs) {
+                doc.createParagraph().createRun().setText(paragraph);
+            }
+            doc.write(out);
+        }
+    }
+
+    private static void writePptx(Path path, List<String> paragraphs) throws IOException {
+        try (XMLSlideShow ppt = new XMLSlideShow(); OutputStream out = Files.newOutputStream(path)) {
+            for (String paragraph : paragraphs) {
+                XSLFSlide slide = ppt.createSlide();
+                XSLFTextBox box = slide.createTextBox();
+                box.setAnchor(new Rectangle2D.Double(40, 40, 640, 460));
+                box.setText(paragraph);
+            }
+            ppt.write(out);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.bmad.bench;
+
+import com.bmad.config.ModelConfig;
+import com.bmad.service.EmbeddingCache;
+import com.bmad.service.EmbeddingService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 基准测试用的确定性向量化替身。
+ *
+ * 不加载原生库：按词做特征哈希 (feature hashing) 后归一化，同一文本总是得到同一向量，
+ * 共享词汇越多的文本余弦相似度越高，使向量召回的结果具有可比性。
+ */
+public class HashingEmbeddingService extends EmbeddingService {
+
+    private final int dimension;
+
+    public HashingEmbeddingService(int dimension) {
+        super(new EmbeddingCache(new ModelConfig(), 0, "", 0));
+        this.dimension = dimension;
+    }
+
+    @Override
+    public float[] getEmbedding(String text) {
+        float[] vector = new float[dimension];
+        if (text == null) {
+            return vector;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int hash = token.hashCode() * 0x9E3779B1;
+            vector[Math.floorMod(hash, dimension)] += (hash & 0x10000) == 0 ? 1f : -1f;
+        }
+        float norm = 0f;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0f) {
+            float inv = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= inv;
+            }
+        } else {
+            // 余弦相似度不接受全零向量
+            vector[0] = 1f;
+        }
+        return vector;
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(getEmbedding(text));
+        }
+        return vectors;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+}
@@ -0,0 +1,131 @@
+package com.bmad.bench;
+
+import com.bmad.model.DocumentSegment;
+import com.bmad.service.DocumentService;
+import com.bmad.service.EmbeddingService;
+import com.bmad.service.IndexService;
+import com.bmad.service.TextChunker;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入库路径分阶段基准：解析 → 分块（split 只测分块器，chunk 含 Lucene 文档构建）→ 向量化 → 写入 IndexWriter。
+ *
+ * 每个阶段的输入在 Trial 级别预先准备好，单个基准方法只测量一个阶段。
+ * 构建配置默认启用 gc profiler，报告中的 gc.alloc.rate.norm 即每次操作的分配字节数，用于发现解析器与分块的内存回归。
+ * 向量化阶段使用 {@link HashingEmbeddingService}，测得的是批量组装与文档回填的开销，不含模型推理。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestionBenchmark {
+
+    private static final int DIMENSION = 128;
+
+    @Param({"pdf", "docx", "pptx", "txt"})
+    public String format;
+
+    /** 规模：PDF 为页数，PPTX 为幻灯片数，DOCX / TXT 为段落数 */
+    @Param({"50"})
+    public int units;
+
+    private Path root;
+    private Path fixture;
+    private String filename;
+    private DocumentService documentService;
+    private EmbeddingService embeddingService;
+    private IndexService indexService;
+
+    private List<DocumentSegment> segments;
+    private List<String> childTexts;
+    private List<Document> embeddedDocs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("bmad-ingest-bench");
+        fixture = Fixtures.create(root, format, units);
+        filename = fixture.getFileName().toString();
+
+        documentService = new DocumentService();
+        documentService.init();
+        embeddingService = new HashingEmbeddingService(DIMENSION);
+        indexService = BenchSupport.newIndexService(root, embeddingService);
+
+        segments = documentService.parseDocument(filename, fixture);
+        List<Document> docs = indexService.buildChunkDocuments(filename, segments);
+        childTexts = new ArrayList<>();
+        for (Document doc : docs) {
+            String childContent = doc.get("child_content");
+            if (childContent != null) {
+                childTexts.add(childContent);
+            }
+        }
+        indexService.embedDocuments(docs);
+        embeddedDocs = docs;
+    }
+
+    /**
+     * 每轮迭代从空索引开始，避免写入阶段的段合并开销随迭代累积。
+     */
+    @Setup(Level.Iteration)
+    public void resetIndex() throws Exception {
+        indexService.deleteAll();
+    }
+
+    @Benchmark
+    public List<DocumentSegment> parse() throws Exception {
+        return documentService.parseDocument(filename, fixture);
+    }
+
+    @Benchmark
+    public int split() {
+        TextChunker parents = new TextChunker(800, 100);
+        TextChunker children = new TextChunker(300, 50);
+        int count = 0;
+        for (DocumentSegment segment : segments) {
+            for (TextChunker.Chunk parent : parents.chunks(segment.getContent())) {
+                for (TextChunker.Chunk child : children.chunks(parent.toString())) {
+                    count += child.length();
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<Document> chunk() throws Exception {
+        return indexService.buildChunkDocuments(filename, segments);
+    }
+
+    @Benchmark
+    public List<float[]> embed() {
+        return embeddingService.embedBatch(childTexts);
+    }
+
+    @Benchmark
+    public void index() throws Exception {
+        indexService.replaceDocuments(filename, "bench", embeddedDocs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        indexService.cleanup();
+        documentService.shutdown();
+        BenchSupport.deleteRecursively(root);
+    }
+}
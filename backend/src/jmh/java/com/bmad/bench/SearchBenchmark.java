@@ -0,0 +1,96 @@
+package com.bmad.bench;
+
+import com.bmad.model.DocumentSegment;
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResponse;
+import com.bmad.service.IndexService;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 检索路径基准：向量召回、关键词召回与混合检索，包含结果加载 (materialization)。
+ *
+ * 向量化使用 {@link HashingEmbeddingService}，不依赖原生库，测得的是 Lucene 检索、融合与结果组装本身的开销。
+ * 运行方式：gradle :backend:jmh -x buildNative，结果以 JSON 写入 build/reports/jmh/results.json。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+
+    private static final int DIMENSION = 128;
+    private static final int QUERY_POOL = 256;
+
+    /** 语料来源："synthetic" 或 fixture 目录路径 */
+    @Param("synthetic")
+    public String corpus;
+
+    @Param({"100", "1000"})
+    public int files;
+
+    @Param("20")
+    public int segmentsPerFile;
+
+    @Param({"HYBRID", "VECTOR", "KEYWORD"})
+    public SearchMode mode;
+
+    /** 返回字段："all" 表示全部字段，否则为逗号分隔的字段名 */
+    @Param({"all", "filename,chunk_id"})
+    public String fields;
+
+    private Path root;
+    private IndexService indexService;
+    private List<String> queries;
+    private Set<String> returnFields;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("bmad-search-bench");
+        indexService = BenchSupport.newIndexService(root, new HashingEmbeddingService(DIMENSION));
+
+        Corpus source = Corpus.load(corpus, files, segmentsPerFile);
+        for (Map.Entry<String, List<DocumentSegment>> file : source.files().entrySet()) {
+            List<Document> docs = indexService.buildChunkDocuments(file.getKey(), file.getValue());
+            indexService.embedDocuments(docs);
+            indexService.replaceDocuments(file.getKey(), file.getKey(), docs);
+        }
+        indexService.commit();
+
+        queries = source.queries(QUERY_POOL);
+        returnFields = "all".equals(fields) ? null : Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public SearchResponse search() throws Exception {
+        String query = queries.get(next);
+        next = (next + 1) % queries.size();
+        return indexService.search(query, returnFields, mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        indexService.cleanup();
+        BenchSupport.deleteRecursively(root);
+    }
+}
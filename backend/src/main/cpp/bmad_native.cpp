@@ -1,7 +1,42 @@
 #include <jni.h>
+#include <algorithm>
+#include <cstdlib>
+#include <filesystem>
+#include <fstream>
+#include <memory>
+#include <mutex>
+#include <shared_mutex>
 #include <string>
+#include <string_view>
 #include <vector>
 
+#ifdef _WIN32
+#define NOMINMAX
+#include <windows.h>
+#include <psapi.h>
+#else
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
+
+// Loaded model weights: either copied into malloc'd memory, or a read-only mapping of the model file
+// whose pages are loaded lazily and shared through the page cache (ModelConfig.offHeap)
+static void* g_model_ptr = nullptr;
+static size_t g_model_size = 0;
+static bool g_model_mapped = false;
+
+// One inference context per concurrent caller; the (read-only) model weights are shared.
+// Inference holds g_model_lock shared, model load/free and pool rebuilds hold it exclusively.
+struct InferenceContext {
+    std::vector<float> scratch;
+    std::mutex busy;
+};
+
+static std::shared_mutex g_model_lock;
+static std::vector<std::unique_ptr<InferenceContext>> g_contexts;
+
 extern "C" {
 
 JNIEXPORT jstring JNICALL
@@ -9,14 +44,246 @@ Java_com_bmad_nativeapi_LlamaNative_handshake(JNIEnv *env, jclass clazz) {
     return env->NewStringUTF("Native Handshake: Connection Secure!");
 }
 
+// Caller holds g_model_lock exclusively
+static void release_model() {
+    if (g_model_ptr == nullptr) return;
+    if (g_model_mapped) {
+#ifdef _WIN32
+        UnmapViewOfFile(g_model_ptr);
+#else
+        munmap(g_model_ptr, g_model_size);
+#endif
+    } else {
+        std::free(g_model_ptr);
+    }
+    g_model_ptr = nullptr;
+    g_model_size = 0;
+    g_model_mapped = false;
+}
+
+static bool map_model_file(const char* path) {
+#ifdef _WIN32
+    int wideLength = MultiByteToWideChar(CP_UTF8, 0, path, -1, nullptr, 0);
+    std::wstring widePath(static_cast<size_t>(wideLength > 0 ? wideLength : 1), L'\0');
+    MultiByteToWideChar(CP_UTF8, 0, path, -1, &widePath[0], wideLength);
+
+    HANDLE file = CreateFileW(widePath.c_str(), GENERIC_READ, FILE_SHARE_READ, nullptr,
+                              OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, nullptr);
+    if (file == INVALID_HANDLE_VALUE) return false;
+    LARGE_INTEGER size;
+    if (!GetFileSizeEx(file, &size) || size.QuadPart == 0) {
+        CloseHandle(file);
+        return false;
+    }
+    HANDLE mapping = CreateFileMappingW(file, nullptr, PAGE_READONLY, 0, 0, nullptr);
+    CloseHandle(file);
+    if (mapping == nullptr) return false;
+    void* view = MapViewOfFile(mapping, FILE_MAP_READ, 0, 0, 0);
+    CloseHandle(mapping);
+    if (view == nullptr) return false;
+    g_model_ptr = view;
+    g_model_size = static_cast<size_t>(size.QuadPart);
+#else
+    int fd = open(path, O_RDONLY);
+    if (fd < 0) return false;
+    struct stat st;
+    if (fstat(fd, &st) != 0 || st.st_size == 0) {
+        close(fd);
+        return false;
+    }
+    void* addr = mmap(nullptr, static_cast<size_t>(st.st_size), PROT_READ, MAP_SHARED, fd, 0);
+    close(fd);
+    if (addr == MAP_FAILED) return false;
+    g_model_ptr = addr;
+    g_model_size = static_cast<size_t>(st.st_size);
+#endif
+    g_model_mapped = true;
+    return true;
+}
+
+static bool copy_model_file(const char* path) {
+    std::ifstream in(std::filesystem::u8path(path), std::ios::binary | std::ios::ate);
+    if (!in) return false;
+    std::streamsize size = in.tellg();
+    if (size <= 0) return false;
+    in.seekg(0, std::ios::beg);
+    void* data = std::malloc(static_cast<size_t>(size));
+    if (data == nullptr) return false;
+    if (!in.read(static_cast<char*>(data), size)) {
+        std::free(data);
+        return false;
+    }
+    g_model_ptr = data;
+    g_model_size = static_cast<size_t>(size);
+    g_model_mapped = false;
+    return true;
+}
+
+// Explicit copy; a missing model file still reports success (mock, no model in development)
 JNIEXPORT jint JNICALL
 Java_com_bmad_nativeapi_LlamaNative_loadModel(JNIEnv *env, jclass clazz, jstring path) {
+    const char *nativePath = env->GetStringUTFChars(path, 0);
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    release_model();
+    copy_model_file(nativePath);
+    env->ReleaseStringUTFChars(path, nativePath);
     return 1; // Mock success
 }
 
+// Memory-mapped load; fails if the file cannot be mapped so the caller can fall back to loadModel
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_mapModel(JNIEnv *env, jclass clazz, jstring path) {
+    const char *nativePath = env->GetStringUTFChars(path, 0);
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    release_model();
+    bool mapped = map_model_file(nativePath);
+    env->ReleaseStringUTFChars(path, nativePath);
+    return mapped ? 1 : 0;
+}
+
 JNIEXPORT void JNICALL
 Java_com_bmad_nativeapi_LlamaNative_freeModel(JNIEnv *env, jclass clazz) {
-    // Mock free
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    release_model();
+}
+
+// Resident bytes of the model weights: copies count fully, mappings are queried page by page (-1 if unsupported)
+static jlong model_resident_bytes() {
+    if (g_model_ptr == nullptr) return 0;
+    if (!g_model_mapped) return static_cast<jlong>(g_model_size);
+#ifdef _WIN32
+    SYSTEM_INFO info;
+    GetSystemInfo(&info);
+    size_t page = info.dwPageSize;
+    size_t pages = (g_model_size + page - 1) / page;
+    std::vector<PSAPI_WORKING_SET_EX_INFORMATION> entries(pages);
+    for (size_t i = 0; i < pages; ++i) {
+        entries[i].VirtualAddress = static_cast<char*>(g_model_ptr) + i * page;
+    }
+    if (!QueryWorkingSetEx(GetCurrentProcess(), entries.data(),
+                           static_cast<DWORD>(pages * sizeof(PSAPI_WORKING_SET_EX_INFORMATION)))) {
+        return -1;
+    }
+    size_t resident = 0;
+    for (const auto& entry : entries) {
+        if (entry.VirtualAttributes.Valid) ++resident;
+    }
+    return static_cast<jlong>(std::min(resident * page, g_model_size));
+#else
+    size_t page = static_cast<size_t>(sysconf(_SC_PAGESIZE));
+    size_t pages = (g_model_size + page - 1) / page;
+#ifdef __APPLE__
+    std::vector<char> residency(pages);
+#else
+    std::vector<unsigned char> residency(pages);
+#endif
+    if (mincore(g_model_ptr, g_model_size, residency.data()) != 0) return -1;
+    size_t resident = 0;
+    for (auto flag : residency) {
+        if (flag & 1) ++resident;
+    }
+    return static_cast<jlong>(std::min(resident * page, g_model_size));
+#endif
+}
+
+// Process resident set / working set including the JVM heap (-1 if unsupported)
+static jlong process_resident_bytes() {
+#ifdef _WIN32
+    PROCESS_MEMORY_COUNTERS counters;
+    if (!GetProcessMemoryInfo(GetCurrentProcess(), &counters, sizeof(counters))) return -1;
+    return static_cast<jlong>(counters.WorkingSetSize);
+#elif defined(__linux__)
+    std::ifstream statm("/proc/self/statm");
+    long totalPages = 0;
+    long residentPages = 0;
+    if (!(statm >> totalPages >> residentPages)) return -1;
+    return static_cast<jlong>(residentPages) * sysconf(_SC_PAGESIZE);
+#else
+    return -1;
+#endif
+}
+
+// { mapped bytes, copied bytes, model resident bytes, process resident bytes }
+JNIEXPORT jlongArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getMemoryStats(JNIEnv *env, jclass clazz) {
+    jlong stats[4];
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        stats[0] = g_model_mapped ? static_cast<jlong>(g_model_size) : 0;
+        stats[1] = g_model_mapped ? 0 : static_cast<jlong>(g_model_size);
+        stats[2] = model_resident_bytes();
+    }
+    stats[3] = process_resident_bytes();
+
+    jlongArray result = env->NewLongArray(4);
+    env->SetLongArrayRegion(result, 0, 4, stats);
+    return result;
+}
+
+static const int kEmbeddingDim = 384;
+
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingDimension(JNIEnv *env, jclass clazz) {
+    return kEmbeddingDim;
+}
+
+// Generate a deterministic mock hash-based embedding (384 dimensions)
+static void compute_embedding(std::string_view str, float* out) {
+    size_t hash = std::hash<std::string_view>{}(str);
+    for (int i = 0; i < kEmbeddingDim; ++i) {
+        out[i] = static_cast<float>((hash >> (i % 32)) & 1);
+    }
+}
+
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_createContexts(JNIEnv *env, jclass clazz, jint count) {
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    g_contexts.clear();
+    for (jint i = 0; i < count; ++i) {
+        auto context = std::make_unique<InferenceContext>();
+        context->scratch.resize(kEmbeddingDim);
+        g_contexts.push_back(std::move(context));
+    }
+    return static_cast<jint>(g_contexts.size());
+}
+
+JNIEXPORT void JNICALL
+Java_com_bmad_nativeapi_LlamaNative_freeContexts(JNIEnv *env, jclass clazz) {
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    g_contexts.clear();
+}
+
+// getEmbedding / getEmbeddings without an explicit context run serialized on context 0
+static void ensure_default_context() {
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        if (!g_contexts.empty()) return;
+    }
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    if (g_contexts.empty()) {
+        auto context = std::make_unique<InferenceContext>();
+        context->scratch.resize(kEmbeddingDim);
+        g_contexts.push_back(std::move(context));
+    }
+}
+
+// Caller holds g_model_lock shared; returns false for an invalid context index
+static bool embed_in_context(JNIEnv *env, jint context, jobjectArray texts, float* out) {
+    if (context < 0 || static_cast<size_t>(context) >= g_contexts.size()) return false;
+    InferenceContext& ctx = *g_contexts[static_cast<size_t>(context)];
+    std::lock_guard<std::mutex> busy(ctx.busy);
+
+    jsize count = env->GetArrayLength(texts);
+    for (jsize i = 0; i < count; ++i) {
+        jstring text = static_cast<jstring>(env->GetObjectArrayElement(texts, i));
+        if (text == nullptr) continue;
+        const char *nativeString = env->GetStringUTFChars(text, 0);
+        compute_embedding(nativeString, ctx.scratch.data());
+        std::copy(ctx.scratch.begin(), ctx.scratch.end(), out + static_cast<size_t>(i) * kEmbeddingDim);
+        env->ReleaseStringUTFChars(text, nativeString);
+        env->DeleteLocalRef(text);
+    }
+    return true;
 }
 
 JNIEXPORT jfloatArray JNICALL
@@ -25,17 +292,90 @@ Java_com_bmad_nativeapi_LlamaNative_getEmbedding(JNIEnv *env, jclass clazz, jstr
     std::string str(nativeString);
     env->ReleaseStringUTFChars(text, nativeString);
 
-    // Generate a deterministic mock hash-based embedding (384 dimensions)
-    int dim = 384;
-    std::vector<float> vec(dim, 0.0f);
-    size_t hash = std::hash<std::string>{}(str);
-    for (int i = 0; i < dim; ++i) {
-        vec[i] = static_cast<float>((hash >> (i % 32)) & 1);
+    std::vector<float> vec(kEmbeddingDim, 0.0f);
+    ensure_default_context();
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        InferenceContext& ctx = *g_contexts.front();
+        std::lock_guard<std::mutex> busy(ctx.busy);
+        compute_embedding(str, ctx.scratch.data());
+        std::copy(ctx.scratch.begin(), ctx.scratch.end(), vec.begin());
+    }
+
+    jfloatArray result = env->NewFloatArray(kEmbeddingDim);
+    env->SetFloatArrayRegion(result, 0, kEmbeddingDim, vec.data());
+    return result;
+}
+
+// Batched variant: all vectors are packed row-major into one contiguous float[]
+JNIEXPORT jfloatArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddings(JNIEnv *env, jclass clazz, jobjectArray texts) {
+    jsize count = env->GetArrayLength(texts);
+    std::vector<float> buffer(static_cast<size_t>(count) * kEmbeddingDim, 0.0f);
+    ensure_default_context();
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        embed_in_context(env, 0, texts, buffer.data());
+    }
+
+    jfloatArray result = env->NewFloatArray(static_cast<jsize>(buffer.size()));
+    env->SetFloatArrayRegion(result, 0, static_cast<jsize>(buffer.size()), buffer.data());
+    return result;
+}
+
+// Same output layout as getEmbeddings, on a context leased by the caller; distinct contexts run in parallel
+JNIEXPORT jfloatArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingsInContext(JNIEnv *env, jclass clazz, jint context, jobjectArray texts) {
+    jsize count = env->GetArrayLength(texts);
+    std::vector<float> buffer(static_cast<size_t>(count) * kEmbeddingDim, 0.0f);
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        if (!embed_in_context(env, context, texts, buffer.data())) {
+            env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid inference context");
+            return nullptr;
+        }
     }
 
-    jfloatArray result = env->NewFloatArray(dim);
-    env->SetFloatArrayRegion(result, 0, dim, vec.data());
+    jfloatArray result = env->NewFloatArray(static_cast<jsize>(buffer.size()));
+    env->SetFloatArrayRegion(result, 0, static_cast<jsize>(buffer.size()), buffer.data());
     return result;
 }
 
+// Zero-copy variant: text i is the UTF-8 range [offsets[i], offsets[i + 1]) of the direct text buffer,
+// vectors are written row-major straight into the caller's direct FloatBuffer
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingsDirect(JNIEnv *env, jclass clazz, jint context,
+                                                        jobject text, jobject offsets, jint count, jobject out) {
+    const char *bytes = static_cast<const char *>(env->GetDirectBufferAddress(text));
+    const jint *bounds = static_cast<const jint *>(env->GetDirectBufferAddress(offsets));
+    float *vectors = static_cast<float *>(env->GetDirectBufferAddress(out));
+    if (count < 0 || bytes == nullptr || bounds == nullptr || vectors == nullptr
+            || env->GetDirectBufferCapacity(offsets) < static_cast<jlong>(count) + 1
+            || env->GetDirectBufferCapacity(out) < static_cast<jlong>(count) * kEmbeddingDim) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid direct buffers");
+        return 0;
+    }
+    jlong textCapacity = env->GetDirectBufferCapacity(text);
+
+    std::shared_lock<std::shared_mutex> lock(g_model_lock);
+    if (context < 0 || static_cast<size_t>(context) >= g_contexts.size()) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid inference context");
+        return 0;
+    }
+    InferenceContext& ctx = *g_contexts[static_cast<size_t>(context)];
+    std::lock_guard<std::mutex> busy(ctx.busy);
+
+    for (jint i = 0; i < count; ++i) {
+        jint begin = bounds[i];
+        jint end = bounds[i + 1];
+        if (begin < 0 || end < begin || end > textCapacity) {
+            env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid text offsets");
+            return i;
+        }
+        compute_embedding(std::string_view(bytes + begin, static_cast<size_t>(end - begin)), ctx.scratch.data());
+        std::copy(ctx.scratch.begin(), ctx.scratch.end(), vectors + static_cast<size_t>(i) * kEmbeddingDim);
+    }
+    return count;
+}
+
 }
@@ -7,19 +7,64 @@
  */
 
 #include <jni.h>
+#include <algorithm>
 #include <cstdlib>
+#include <filesystem>
+#include <fstream>
 #include <iostream>
 #include <string>
+#include <string_view>
 #include <cmath>
 #include <functional>
+#include <memory>
+#include <mutex>
+#include <shared_mutex>
+#include <vector>
+
+#ifdef _WIN32
+#define NOMINMAX
+#include <windows.h>
+#include <psapi.h>
+#else
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
 
 /**
- * @brief 全局指针，用于跟踪模拟的模型内存地址。
+ * @brief 当前加载的模型权重。
  * 
  * 在生产环境（例如集成 llama.cpp）中，这将指向一个结构化的上下文对象。
- * 我们在这里使用全局指针来演示手动堆外内存管理，并防止 JNI 调用之间的内存泄漏。
+ * 权重有两种驻留方式，由 Java 层按 ModelConfig.offHeap 选择：
+ * - 复制 (g_model_mapped == false)：整个文件读入 malloc 分配的内存，加载即全部驻留，每个进程一份。
+ * - 内存映射 (g_model_mapped == true)：只读映射模型文件，页面在首次访问时才载入，
+ *   并与页缓存及其他映射同一文件的进程共享。
  */
 static void* g_model_ptr = nullptr;
+static std::size_t g_model_size = 0;
+static bool g_model_mapped = false;
+
+/**
+ * @brief 推理上下文：一次前向计算所需的全部可变状态。
+ *
+ * 模型权重只读且由所有上下文共享；可变状态（真实实现中为 KV cache 与计算图缓冲区）放在上下文里，
+ * 因此不同上下文上的推理可以在多个线程中同时进行。同一上下文同一时刻只应有一个调用方，
+ * Java 层通过租约保证这一点，busy 互斥锁作为兜底防止误用时的数据竞争。
+ */
+struct InferenceContext {
+    std::vector<float> scratch;
+    std::mutex busy;
+};
+
+/**
+ * @brief 模型与上下文池的生命周期锁。
+ *
+ * 推理持有共享锁；加载/释放模型、重建上下文池持有独占锁，
+ * 因此正在进行的推理结束之前，权重与上下文都不会被释放。
+ */
+static std::shared_mutex g_model_lock;
+static std::vector<std::unique_ptr<InferenceContext>> g_contexts;
 
 extern "C" {
 
@@ -41,19 +86,112 @@ Java_com_bmad_nativeapi_LlamaNative_handshake(JNIEnv *env, jclass clazz) {
     return env->NewStringUTF(message.c_str());
 }
 
+/**
+ * @brief 释放当前模型（解除映射或释放复制的内存）。调用方需持有 g_model_lock 的独占锁。
+ */
+static void release_model() {
+    if (g_model_ptr == nullptr) return;
+    std::cout << "[Native] 信息: 正在显式释放模型内存: " << g_model_ptr << std::endl;
+    if (g_model_mapped) {
+#ifdef _WIN32
+        UnmapViewOfFile(g_model_ptr);
+#else
+        munmap(g_model_ptr, g_model_size);
+#endif
+    } else {
+        std::free(g_model_ptr);
+    }
+    g_model_ptr = nullptr;
+    g_model_size = 0;
+    g_model_mapped = false;
+}
+
+/**
+ * @brief 以只读方式映射整个模型文件。
+ *
+ * 映射建立后即可关闭文件句柄，映射本身会保持文件打开。
+ *
+ * @return 文件不存在、为空或映射失败时返回 false。
+ */
+static bool map_model_file(const char* path) {
+#ifdef _WIN32
+    int wide_length = MultiByteToWideChar(CP_UTF8, 0, path, -1, nullptr, 0);
+    std::wstring wide_path(static_cast<std::size_t>(wide_length > 0 ? wide_length : 1), L'\0');
+    MultiByteToWideChar(CP_UTF8, 0, path, -1, &wide_path[0], wide_length);
+
+    HANDLE file = CreateFileW(wide_path.c_str(), GENERIC_READ, FILE_SHARE_READ, nullptr,
+                              OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, nullptr);
+    if (file == INVALID_HANDLE_VALUE) return false;
+    LARGE_INTEGER size;
+    if (!GetFileSizeEx(file, &size) || size.QuadPart == 0) {
+        CloseHandle(file);
+        return false;
+    }
+    HANDLE mapping = CreateFileMappingW(file, nullptr, PAGE_READONLY, 0, 0, nullptr);
+    CloseHandle(file);
+    if (mapping == nullptr) return false;
+    void* view = MapViewOfFile(mapping, FILE_MAP_READ, 0, 0, 0);
+    CloseHandle(mapping);
+    if (view == nullptr) return false;
+
+    g_model_ptr = view;
+    g_model_size = static_cast<std::size_t>(size.QuadPart);
+#else
+    int fd = open(path, O_RDONLY);
+    if (fd < 0) return false;
+    struct stat st;
+    if (fstat(fd, &st) != 0 || st.st_size == 0) {
+        close(fd);
+        return false;
+    }
+    void* addr = mmap(nullptr, static_cast<std::size_t>(st.st_size), PROT_READ, MAP_SHARED, fd, 0);
+    close(fd);
+    if (addr == MAP_FAILED) return false;
+
+    g_model_ptr = addr;
+    g_model_size = static_cast<std::size_t>(st.st_size);
+#endif
+    g_model_mapped = true;
+    return true;
+}
+
+/**
+ * @brief 把整个模型文件显式复制到 malloc 分配的内存中。
+ *
+ * @return 文件不存在或读取失败时返回 false。
+ */
+static bool copy_model_file(const char* path) {
+    std::ifstream in(std::filesystem::u8path(path), std::ios::binary | std::ios::ate);
+    if (!in) return false;
+    const std::streamsize size = in.tellg();
+    if (size <= 0) return false;
+    in.seekg(0, std::ios::beg);
+
+    void* data = std::malloc(static_cast<std::size_t>(size));
+    if (data == nullptr) return false;
+    if (!in.read(static_cast<char*>(data), size)) {
+        std::free(data);
+        return false;
+    }
+    g_model_ptr = data;
+    g_model_size = static_cast<std::size_t>(size);
+    g_model_mapped = false;
+    return true;
+}
+
 /**
  * LlamaNative.loadModel(String path) 的实现
  * 
- * 模拟加载 GGUF 或其他二进制模型文件的过程。
+ * 以显式复制的方式加载 GGUF 或其他二进制模型文件。
  * 1. 安全地将 Java 字符串转换为原生 C 字符串。
  * 2. 实现“重复加载保护”：如果已经加载了模型，则先释放现有内存。
- * 3. 分配 1MB 的堆外内存来模拟模型驻留。
+ * 3. 把整个文件读入堆外内存；文件不存在时（开发环境没有模型文件）分配 1MB 模拟模型驻留。
  * 4. 确保在返回前释放 JNI 字符串资源。
  * 
  * @param env 指向 JNI 环境的指针。
  * @param clazz Java 类对象。
  * @param path 模型文件的文件系统路径。
- * @return 模拟加载成功返回 1，否则返回 0。
+ * @return 加载成功返回 1，否则返回 0。
  */
 JNIEXPORT jint JNICALL
 Java_com_bmad_nativeapi_LlamaNative_loadModel(JNIEnv *env, jclass clazz, jstring path) {
@@ -64,20 +202,25 @@ Java_com_bmad_nativeapi_LlamaNative_loadModel(JNIEnv *env, jclass clazz, jstring
     if (model_path == nullptr) return 0;
 
     std::cout << "[Native] 信息: 尝试从以下路径加载模型: " << model_path << std::endl;
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
     
     // 重复加载保护：如果存在之前的分配，则先清理
     if (g_model_ptr != nullptr) {
         std::cout << "[Native] 信息: 在重新加载前释放现有的模型内存。" << std::endl;
-        std::free(g_model_ptr);
-        g_model_ptr = nullptr;
+        release_model();
     }
     
-    // 为模型模拟堆外内存分配 (1MB)
-    g_model_ptr = std::malloc(1024 * 1024);
-    if (g_model_ptr != nullptr) {
-        std::cout << "[Native] 成功: 模型已加载到模拟内存地址: " << g_model_ptr << std::endl;
+    if (copy_model_file(model_path)) {
+        std::cout << "[Native] 成功: 模型文件已复制到内存地址: " << g_model_ptr << " (" << g_model_size << " 字节)" << std::endl;
     } else {
-        std::cerr << "[Native] 错误: 模型内存分配失败。" << std::endl;
+        // 为模型模拟堆外内存分配 (1MB)
+        g_model_ptr = std::malloc(1024 * 1024);
+        g_model_size = g_model_ptr != nullptr ? 1024 * 1024 : 0;
+        if (g_model_ptr != nullptr) {
+            std::cout << "[Native] 成功: 模型已加载到模拟内存地址: " << g_model_ptr << std::endl;
+        } else {
+            std::cerr << "[Native] 错误: 模型内存分配失败。" << std::endl;
+        }
     }
 
     // 重要：将用于路径字符串的内存释放回 JVM
@@ -86,10 +229,39 @@ Java_com_bmad_nativeapi_LlamaNative_loadModel(JNIEnv *env, jclass clazz, jstring
     return g_model_ptr != nullptr ? 1 : 0;
 }
 
+/**
+ * LlamaNative.mapModel(String path) 的实现
+ * 
+ * 以内存映射方式加载模型文件：不复制文件内容，页面按需载入并可在进程间共享。
+ * 与 loadModel 不同，文件不存在或无法映射时直接失败，由 Java 层决定是否回退到复制加载。
+ * 
+ * @return 映射成功返回 1，否则返回 0。
+ */
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_mapModel(JNIEnv *env, jclass clazz, jstring path) {
+    (void)clazz;
+
+    const char *model_path = env->GetStringUTFChars(path, nullptr);
+    if (model_path == nullptr) return 0;
+
+    std::cout << "[Native] 信息: 尝试以内存映射方式加载模型: " << model_path << std::endl;
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    release_model();
+    bool mapped = map_model_file(model_path);
+    if (mapped) {
+        std::cout << "[Native] 成功: 模型已映射到地址: " << g_model_ptr << " (" << g_model_size << " 字节)" << std::endl;
+    } else {
+        std::cerr << "[Native] 错误: 模型文件映射失败。" << std::endl;
+    }
+
+    env->ReleaseStringUTFChars(path, model_path);
+    return mapped ? 1 : 0;
+}
+
 /**
  * LlamaNative.freeModel() 的实现
  * 
- * 安全地释放 g_model_ptr 占用的堆外内存。
+ * 安全地释放 g_model_ptr 占用的堆外内存或映射。
  * 即使多次调用也是安全的。
  */
 JNIEXPORT void JNICALL
@@ -97,11 +269,245 @@ Java_com_bmad_nativeapi_LlamaNative_freeModel(JNIEnv *env, jclass clazz) {
     (void)env;
     (void)clazz;
     
-    if (g_model_ptr != nullptr) {
-        std::cout << "[Native] 信息: 正在显式释放模型内存: " << g_model_ptr << std::endl;
-        std::free(g_model_ptr);
-        g_model_ptr = nullptr;
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    release_model();
+}
+
+/**
+ * @brief 模型权重中当前驻留在物理内存中的字节数。
+ *
+ * 复制加载的权重在读取时已全部载入，按文件大小计；映射加载的权重逐页查询驻留状态，
+ * 平台不支持查询时返回 -1。调用方需持有 g_model_lock。
+ */
+static jlong model_resident_bytes() {
+    if (g_model_ptr == nullptr) return 0;
+    if (!g_model_mapped) return static_cast<jlong>(g_model_size);
+#ifdef _WIN32
+    SYSTEM_INFO info;
+    GetSystemInfo(&info);
+    const std::size_t page = info.dwPageSize;
+    const std::size_t pages = (g_model_size + page - 1) / page;
+    std::vector<PSAPI_WORKING_SET_EX_INFORMATION> entries(pages);
+    for (std::size_t i = 0; i < pages; i++) {
+        entries[i].VirtualAddress = static_cast<char*>(g_model_ptr) + i * page;
+    }
+    if (!QueryWorkingSetEx(GetCurrentProcess(), entries.data(),
+                           static_cast<DWORD>(pages * sizeof(PSAPI_WORKING_SET_EX_INFORMATION)))) {
+        return -1;
+    }
+    std::size_t resident = 0;
+    for (const auto& entry : entries) {
+        if (entry.VirtualAttributes.Valid) resident++;
+    }
+    return static_cast<jlong>(std::min(resident * page, g_model_size));
+#else
+    const std::size_t page = static_cast<std::size_t>(sysconf(_SC_PAGESIZE));
+    const std::size_t pages = (g_model_size + page - 1) / page;
+#ifdef __APPLE__
+    std::vector<char> residency(pages);
+#else
+    std::vector<unsigned char> residency(pages);
+#endif
+    if (mincore(g_model_ptr, g_model_size, residency.data()) != 0) return -1;
+    std::size_t resident = 0;
+    for (auto flag : residency) {
+        if (flag & 1) resident++;
+    }
+    return static_cast<jlong>(std::min(resident * page, g_model_size));
+#endif
+}
+
+/**
+ * @brief 整个进程的常驻内存 (RSS / 工作集)，包含 JVM 堆；平台不支持时返回 -1。
+ */
+static jlong process_resident_bytes() {
+#ifdef _WIN32
+    PROCESS_MEMORY_COUNTERS counters;
+    if (!GetProcessMemoryInfo(GetCurrentProcess(), &counters, sizeof(counters))) return -1;
+    return static_cast<jlong>(counters.WorkingSetSize);
+#elif defined(__linux__)
+    std::ifstream statm("/proc/self/statm");
+    long total_pages = 0;
+    long resident_pages = 0;
+    if (!(statm >> total_pages >> resident_pages)) return -1;
+    return static_cast<jlong>(resident_pages) * sysconf(_SC_PAGESIZE);
+#else
+    return -1;
+#endif
+}
+
+/**
+ * LlamaNative.getMemoryStats() 的实现
+ * 
+ * @return 长度为 4 的数组：映射字节数、复制到堆外内存的字节数、模型驻留字节数、进程常驻内存字节数。
+ */
+JNIEXPORT jlongArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getMemoryStats(JNIEnv *env, jclass clazz) {
+    (void)clazz;
+
+    jlong stats[4];
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        stats[0] = g_model_mapped ? static_cast<jlong>(g_model_size) : 0;
+        stats[1] = g_model_mapped ? 0 : static_cast<jlong>(g_model_size);
+        stats[2] = model_resident_bytes();
     }
+    stats[3] = process_resident_bytes();
+
+    jlongArray result = env->NewLongArray(4);
+    if (result == nullptr) return nullptr;
+    env->SetLongArrayRegion(result, 0, 4, stats);
+    return result;
+}
+
+/**
+ * 向量维度：我们暂定 128 维
+ */
+static const int kEmbeddingDim = 128;
+
+/**
+ * LlamaNative.getEmbeddingDimension() 的实现
+ *
+ * 返回模型输出向量的维数，Java 层据此校验索引中的向量字段维数。
+ */
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingDimension(JNIEnv *env, jclass clazz) {
+    (void)env;
+    (void)clazz;
+    return kEmbeddingDim;
+}
+
+/**
+ * @brief 将单条文本映射为归一化的伪语义向量，结果写入调用方提供的缓冲区。
+ *
+ * 单条与批量两个 JNI 入口共用此逻辑，保证同一文本在两种调用方式下得到相同向量。
+ *
+ * @param s 输入文本 (UTF-8)，以视图形式传入，不要求以 '\0' 结尾。
+ * @param out 至少 kEmbeddingDim 个 float 的输出缓冲区。
+ */
+static void compute_embedding(std::string_view s, float* out) {
+    std::size_t hash = std::hash<std::string_view>{}(s);
+
+    // 基于哈希值生成伪随机向量并归一化（模拟语义空间的分布）
+    float sum_sq = 0.0f;
+    for (int i = 0; i < kEmbeddingDim; i++) {
+        out[i] = (float)((hash + i * 13) % 1000) / 1000.0f;
+        sum_sq += out[i] * out[i];
+    }
+
+    float norm = std::sqrt(sum_sq);
+    for (int i = 0; i < kEmbeddingDim; i++) {
+        out[i] /= norm;
+    }
+}
+
+/**
+ * LlamaNative.createContexts(int count) 的实现
+ *
+ * 重建上下文池：释放旧上下文，创建 count 个共享同一份模型权重的独立上下文。
+ *
+ * @return 实际创建的上下文数量。
+ */
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_createContexts(JNIEnv *env, jclass clazz, jint count) {
+    (void)env;
+    (void)clazz;
+
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    g_contexts.clear();
+    for (jint i = 0; i < count; i++) {
+        auto context = std::make_unique<InferenceContext>();
+        context->scratch.resize(kEmbeddingDim);
+        g_contexts.push_back(std::move(context));
+    }
+    return static_cast<jint>(g_contexts.size());
+}
+
+/**
+ * LlamaNative.freeContexts() 的实现
+ *
+ * 释放上下文池，等待正在进行的推理结束后执行。即使多次调用也是安全的。
+ */
+JNIEXPORT void JNICALL
+Java_com_bmad_nativeapi_LlamaNative_freeContexts(JNIEnv *env, jclass clazz) {
+    (void)env;
+    (void)clazz;
+
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    g_contexts.clear();
+}
+
+/**
+ * @brief 确保至少存在一个上下文，供未指定上下文的 getEmbedding / getEmbeddings 使用。
+ */
+static void ensure_default_context() {
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        if (!g_contexts.empty()) return;
+    }
+    std::unique_lock<std::shared_mutex> lock(g_model_lock);
+    if (g_contexts.empty()) {
+        auto context = std::make_unique<InferenceContext>();
+        context->scratch.resize(kEmbeddingDim);
+        g_contexts.push_back(std::move(context));
+    }
+}
+
+/**
+ * @brief 在指定上下文上批量向量化，结果按行优先写入 out (count * kEmbeddingDim)。
+ *
+ * 调用方需持有 g_model_lock 的共享锁；null 元素保留全零向量。
+ *
+ * @return 上下文编号无效时返回 false。
+ */
+static bool embed_in_context(JNIEnv *env, jint context, jobjectArray texts, float* out) {
+    if (context < 0 || static_cast<std::size_t>(context) >= g_contexts.size()) return false;
+    InferenceContext& ctx = *g_contexts[static_cast<std::size_t>(context)];
+    std::lock_guard<std::mutex> busy(ctx.busy);
+
+    const jsize count = env->GetArrayLength(texts);
+    for (jsize i = 0; i < count; i++) {
+        jstring text = static_cast<jstring>(env->GetObjectArrayElement(texts, i));
+        if (text == nullptr) continue;
+
+        const char *input = env->GetStringUTFChars(text, nullptr);
+        if (input != nullptr) {
+            // 在上下文自己的缓冲区中计算，完成后拷贝到输出位置
+            compute_embedding(input, ctx.scratch.data());
+            std::copy(ctx.scratch.begin(), ctx.scratch.end(), out + static_cast<std::size_t>(i) * kEmbeddingDim);
+            env->ReleaseStringUTFChars(text, input);
+        }
+        // 及时释放局部引用，避免大批量时耗尽 JNI 局部引用表
+        env->DeleteLocalRef(text);
+    }
+    return true;
+}
+
+/**
+ * LlamaNative.getEmbeddingsInContext(int context, String[] texts) 的实现
+ *
+ * 输出格式与 getEmbeddings 相同，但在调用方租用的上下文上执行；不同上下文上的调用可以并行。
+ */
+JNIEXPORT jfloatArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingsInContext(JNIEnv *env, jclass clazz, jint context, jobjectArray texts) {
+    (void)clazz;
+
+    if (texts == nullptr) return nullptr;
+    const jsize count = env->GetArrayLength(texts);
+
+    std::vector<float> buffer(static_cast<std::size_t>(count) * kEmbeddingDim, 0.0f);
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        if (!embed_in_context(env, context, texts, buffer.data())) {
+            env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid inference context");
+            return nullptr;
+        }
+    }
+
+    jfloatArray result = env->NewFloatArray(static_cast<jsize>(buffer.size()));
+    if (result == nullptr) return nullptr;
+    env->SetFloatArrayRegion(result, 0, static_cast<jsize>(buffer.size()), buffer.data());
+    return result;
 }
 
 /**
@@ -118,31 +524,102 @@ Java_com_bmad_nativeapi_LlamaNative_getEmbedding(JNIEnv *env, jclass clazz, jstr
     const char *input = env->GetStringUTFChars(text, nullptr);
     if (input == nullptr) return nullptr;
 
-    // 向量维度：我们暂定 128 维
-    const int dim = 128;
-    jfloatArray result = env->NewFloatArray(dim);
-    if (result == nullptr) return nullptr;
-
-    float vector[dim];
-    std::string s(input);
-    std::size_t hash = std::hash<std::string>{}(s);
-
-    // 基于哈希值生成伪随机向量并归一化（模拟语义空间的分布）
-    float sum_sq = 0.0f;
-    for (int i = 0; i < dim; i++) {
-        vector[i] = (float)((hash + i * 13) % 1000) / 1000.0f;
-        sum_sq += vector[i] * vector[i];
+    jfloatArray result = env->NewFloatArray(kEmbeddingDim);
+    if (result == nullptr) {
+        env->ReleaseStringUTFChars(text, input);
+        return nullptr;
     }
-    
-    float norm = std::sqrt(sum_sq);
-    for (int i = 0; i < dim; i++) {
-        vector[i] /= norm;
+
+    float vector[kEmbeddingDim];
+    ensure_default_context();
+    {
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        InferenceContext& ctx = *g_contexts.front();
+        std::lock_guard<std::mutex> busy(ctx.busy);
+        compute_embedding(input, ctx.scratch.data());
+        std::copy(ctx.scratch.begin(), ctx.scratch.end(), vector);
     }
 
-    env->SetFloatArrayRegion(result, 0, dim, vector);
+    env->SetFloatArrayRegion(result, 0, kEmbeddingDim, vector);
     env->ReleaseStringUTFChars(text, input);
 
     return result;
 }
 
+/**
+ * LlamaNative.getEmbeddings(String[] texts) 的实现
+ * 
+ * 批量向量化：一次 JNI 调用处理整批文本。
+ * 1. 所有向量先写入同一块连续的原生缓冲区 (n * dim)。
+ * 2. 最后只分配一个 Java float[] 并通过一次 SetFloatArrayRegion 拷贝回 JVM。
+ * 第 i 条文本的向量位于结果数组的 [i * dim, (i + 1) * dim) 区间。
+ */
+JNIEXPORT jfloatArray JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddings(JNIEnv *env, jclass clazz, jobjectArray texts) {
+    (void)clazz;
+
+    if (texts == nullptr) return nullptr;
+    const jsize count = env->GetArrayLength(texts);
+
+    std::vector<float> buffer(static_cast<std::size_t>(count) * kEmbeddingDim, 0.0f);
+    ensure_default_context();
+    {
+        // 未指定上下文的批量调用在 0 号上下文上串行执行
+        std::shared_lock<std::shared_mutex> lock(g_model_lock);
+        embed_in_context(env, 0, texts, buffer.data());
+    }
+
+    jfloatArray result = env->NewFloatArray(static_cast<jsize>(buffer.size()));
+    if (result == nullptr) return nullptr;
+    env->SetFloatArrayRegion(result, 0, static_cast<jsize>(buffer.size()), buffer.data());
+    return result;
+}
+
+/**
+ * LlamaNative.getEmbeddingsDirect(int context, ByteBuffer text, IntBuffer offsets, int count, FloatBuffer out) 的实现
+ *
+ * 零拷贝批量向量化：直接读写调用方持有的直接缓冲区。
+ * 1. 第 i 条文本为 text 中 [offsets[i], offsets[i + 1]) 字节区间的 UTF-8 编码，不创建 std::string。
+ * 2. 向量直接写入 out 的 [i * dim, (i + 1) * dim) 区间，不分配 Java 数组。
+ * 缓冲区均从起始地址访问，忽略 position / limit。
+ *
+ * @return 写入的向量条数。
+ */
+JNIEXPORT jint JNICALL
+Java_com_bmad_nativeapi_LlamaNative_getEmbeddingsDirect(JNIEnv *env, jclass clazz, jint context,
+                                                        jobject text, jobject offsets, jint count, jobject out) {
+    (void)clazz;
+
+    const char *bytes = static_cast<const char *>(env->GetDirectBufferAddress(text));
+    const jint *bounds = static_cast<const jint *>(env->GetDirectBufferAddress(offsets));
+    float *vectors = static_cast<float *>(env->GetDirectBufferAddress(out));
+    if (count < 0 || bytes == nullptr || bounds == nullptr || vectors == nullptr
+            || env->GetDirectBufferCapacity(offsets) < static_cast<jlong>(count) + 1
+            || env->GetDirectBufferCapacity(out) < static_cast<jlong>(count) * kEmbeddingDim) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid direct buffers");
+        return 0;
+    }
+    const jlong text_capacity = env->GetDirectBufferCapacity(text);
+
+    std::shared_lock<std::shared_mutex> lock(g_model_lock);
+    if (context < 0 || static_cast<std::size_t>(context) >= g_contexts.size()) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid inference context");
+        return 0;
+    }
+    InferenceContext& ctx = *g_contexts[static_cast<std::size_t>(context)];
+    std::lock_guard<std::mutex> busy(ctx.busy);
+
+    for (jint i = 0; i < count; i++) {
+        const jint begin = bounds[i];
+        const jint end = bounds[i + 1];
+        if (begin < 0 || end < begin || end > text_capacity) {
+            env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "Invalid text offsets");
+            return i;
+        }
+        compute_embedding(std::string_view(bytes + begin, static_cast<std::size_t>(end - begin)), ctx.scratch.data());
+        std::copy(ctx.scratch.begin(), ctx.scratch.end(), vectors + static_cast<std::size_t>(i) * kEmbeddingDim);
+    }
+    return count;
+}
+
 }
@@ -0,0 +1,79 @@
+package com.bmad.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 混合检索融合配置类：映射 application.yml 中以 "bmad.search.fusion" 为前缀的配置项。
+ * 
+ * 向量检索与关键词检索作为两路独立的召回并行执行，再由 RankFusion 按此处的参数融合排序。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "bmad.search.fusion")
+public class FusionConfig {
+
+    /**
+     * 融合方式。
+     * - rrf: 倒数排名融合 (Reciprocal Rank Fusion)，只依赖名次，不受两路得分尺度差异影响。
+     * - weighted: 每路得分先做 min-max 归一化，再按权重加权求和。
+     */
+    private String mode = "rrf";
+
+    /**
+     * RRF 平滑常数 k，得分为 weight / (k + rank)。值越大，名次靠后的结果衰减越慢。
+     */
+    private int rrfK = 60;
+
+    /**
+     * 向量召回的权重。
+     */
+    private float vectorWeight = 1.0f;
+
+    /**
+     * 关键词召回的权重。
+     */
+    private float keywordWeight = 1.0f;
+
+    /**
+     * 每一路召回的候选数量。
+     */
+    private int legTopK = 50;
+
+    /**
+     * 融合后保留的候选数量（每个父分块计一个候选）。
+     */
+    private int topN = 20;
+
+    /**
+     * 执行两路召回的线程数。
+     */
+    private int legThreads = 4;
+
+    public String getMode() { return mode; }
+
+    public void setMode(String mode) { this.mode = mode; }
+
+    public int getRrfK() { return rrfK; }
+
+    public void setRrfK(int rrfK) { this.rrfK = rrfK; }
+
+    public float getVectorWeight() { return vectorWeight; }
+
+    public void setVectorWeight(float vectorWeight) { this.vectorWeight = vectorWeight; }
+
+    public float getKeywordWeight() { return keywordWeight; }
+
+    public void setKeywordWeight(float keywordWeight) { this.keywordWeight = keywordWeight; }
+
+    public int getLegTopK() { return legTopK; }
+
+    public void setLegTopK(int legTopK) { this.legTopK = legTopK; }
+
+    public int getTopN() { return topN; }
+
+    public void setTopN(int topN) { this.topN = topN; }
+
+    public int getLegThreads() { return legThreads; }
+
+    public void setLegThreads(int legThreads) { this.legThreads = legThreads; }
+}
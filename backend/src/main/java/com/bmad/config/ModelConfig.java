@@ -19,12 +19,19 @@ public class ModelConfig {
     private String path;
 
     /**
-     * 是否启用堆外内存 (Off-heap) 模式加载模型。
-     * - true: 模型将加载到直接内存中，减少 JVM GC 对大模型内存的影响。
-     * - false: 默认行为（取决于本地层实现）。
+     * 是否以内存映射 (mmap) 方式加载模型。
+     * - true: 只读映射模型文件，页面按需载入并与页缓存共享，加载几乎不耗时；映射失败时回退为复制加载。
+     * - false: 把整个模型文件复制到原生堆内存，加载完成即全部驻留。
+     * 两种方式的权重都位于 JVM 堆外，不受 GC 影响。
      */
     private boolean offHeap;
 
+    /**
+     * 原生推理上下文数量，即可以同时执行的向量化调用数。
+     * 所有上下文共享同一份模型权重，每个上下文只额外占用自己的推理状态；0 表示使用 CPU 核数。
+     */
+    private int contexts;
+
     /**
      * 获取配置的模型路径。
      * @return 模型文件路径字符串。
@@ -48,4 +55,16 @@ public class ModelConfig {
      * @param offHeap 布尔值，控制是否使用堆外内存。
      */
     public void setOffHeap(boolean offHeap) { this.offHeap = offHeap; }
+
+    /**
+     * 获取配置的推理上下文数量。
+     * @return 上下文数量，0 表示使用 CPU 核数。
+     */
+    public int getContexts() { return contexts; }
+
+    /**
+     * 设置推理上下文数量。
+     * @param contexts 上下文数量。
+     */
+    public void setContexts(int contexts) { this.contexts = contexts; }
 }
@@ -0,0 +1,78 @@
+package com.bmad.config;
+
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswScalarQuantizedVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswVectorsFormat;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量索引配置类：映射 application.yml 中以 "bmad.index.vector" 为前缀的配置项。
+ * 
+ * 决定 vector 字段使用的 HNSW 编码格式与图参数，只影响之后新写入（及合并产生）的段，
+ * 已有段仍按写入时的格式读取。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "bmad.index.vector")
+public class VectorIndexConfig {
+
+    /**
+     * 向量量化方式。
+     * - none: 原始 float32 向量。
+     * - int8: 标量量化为 int8 (Lucene99HnswScalarQuantizedVectorsFormat)，检索时读取的向量数据约为原来的 1/4，
+     *         召回率略有下降；原始向量仍保留在磁盘上用于合并时重新量化，因此磁盘体积会略有增加。
+     */
+    private String quantization = "none";
+
+    /**
+     * HNSW 图中每个节点的最大连接数 (M)。值越大召回率越高，索引体积与构建时间也越大。
+     */
+    private int m = Lucene99HnswVectorsFormat.DEFAULT_MAX_CONN;
+
+    /**
+     * 构建 HNSW 图时的候选队列大小 (beamWidth / efConstruction)。
+     */
+    private int beamWidth = Lucene99HnswVectorsFormat.DEFAULT_BEAM_WIDTH;
+
+    /**
+     * int8 量化的置信区间，为空时由 Lucene 按维数自动选取。
+     */
+    private Float confidenceInterval;
+
+    /**
+     * 按当前配置构建向量编码格式。
+     */
+    public KnnVectorsFormat buildFormat() {
+        return buildFormat(quantization, m, beamWidth, confidenceInterval);
+    }
+
+    /**
+     * 按给定参数构建向量编码格式，供对比报告复用。
+     */
+    public static KnnVectorsFormat buildFormat(String quantization, int m, int beamWidth, Float confidenceInterval) {
+        if ("int8".equalsIgnoreCase(quantization)) {
+            return new Lucene99HnswScalarQuantizedVectorsFormat(m, beamWidth,
+                    Lucene99HnswVectorsFormat.DEFAULT_NUM_MERGE_WORKER, confidenceInterval, null);
+        }
+        if ("none".equalsIgnoreCase(quantization)) {
+            return new Lucene99HnswVectorsFormat(m, beamWidth);
+        }
+        throw new IllegalArgumentException("不支持的向量量化方式: " + quantization);
+    }
+
+    public String getQuantization() { return quantization; }
+
+    public void setQuantization(String quantization) { this.quantization = quantization; }
+
+    public int getM() { return m; }
+
+    public void setM(int m) { this.m = m; }
+
+    public int getBeamWidth() { return beamWidth; }
+
+    public void setBeamWidth(int beamWidth) { this.beamWidth = beamWidth; }
+
+    public Float getConfidenceInterval() { return confidenceInterval; }
+
+    public void setConfidenceInterval(Float confidenceInterval) { this.confidenceInterval = confidenceInterval; }
+}
@@ -0,0 +1,72 @@
+package com.bmad.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动预热配置类：映射 application.yml 中以 "bmad.warmup" 为前缀的配置项。
+ *
+ * 应用启动完成后在后台依次预读索引文件、加载模型、执行合成向量化与检索，
+ * 全部完成之前就绪探针 (/actuator/health/readiness) 返回 503，负载均衡只把流量转发给已预热的节点。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "bmad.warmup")
+public class WarmupConfig {
+
+    /**
+     * 是否启用启动预热。关闭时就绪状态不受预热影响。
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否预读索引文件，把它们载入操作系统页缓存。
+     */
+    private boolean prefetchIndex = true;
+
+    /**
+     * 是否在启动时加载模型（加载方式由 bmad.model.off-heap 决定）。模型文件不存在时跳过模型相关阶段。
+     */
+    private boolean loadModel = true;
+
+    /**
+     * 每个推理上下文上执行的合成向量化文本条数，0 表示跳过。
+     */
+    private int embeddings = 64;
+
+    /**
+     * 预热检索的查询语句。
+     */
+    private List<String> queries = new ArrayList<>(List.of("检索", "document", "系统配置说明", "how to configure the index"));
+
+    /**
+     * 预热查询的执行轮数，多轮执行让检索路径达到 JIT 编译阈值。
+     */
+    private int rounds = 3;
+
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public boolean isPrefetchIndex() { return prefetchIndex; }
+
+    public void setPrefetchIndex(boolean prefetchIndex) { this.prefetchIndex = prefetchIndex; }
+
+    public boolean isLoadModel() { return loadModel; }
+
+    public void setLoadModel(boolean loadModel) { this.loadModel = loadModel; }
+
+    public int getEmbeddings() { return embeddings; }
+
+    public void setEmbeddings(int embeddings) { this.embeddings = embeddings; }
+
+    public List<String> getQueries() { return queries; }
+
+    public void setQueries(List<String> queries) { this.queries = queries; }
+
+    public int getRounds() { return rounds; }
+
+    public void setRounds(int rounds) { this.rounds = rounds; }
+}
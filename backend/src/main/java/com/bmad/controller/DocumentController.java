@@ -1,117 +1,336 @@
 package com.bmad.controller;
 
-import com.bmad.model.DocumentSegment;
-import com.bmad.service.DocumentService;
+import com.bmad.config.VectorIndexConfig;
+import com.bmad.model.DocumentCatalogEntry;
+import com.bmad.model.Durability;
+import com.bmad.model.IngestionJob;
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResponse;
+import com.bmad.model.SearchResult;
+import com.bmad.service.CollectionService;
+import com.bmad.service.ImageBlobSweeper;
 import com.bmad.service.IndexService;
+import com.bmad.service.IngestionService;
+import com.bmad.service.VectorIndexReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 文档管理控制器。
  * 
  * 职责：
- * 1. 接收前端上传的文档并进行解析。
- * 2. 将解析后的内容持久化到 Lucene 索引库。
- * 3. 提供关键词检索接口。
+ * 1. 接收前端上传的文档，创建异步入库任务。
+ * 2. 提供入库任务的进度查询接口。
+ * 3. 提供关键词检索接口，可在单个或多个集合中检索。
+ * 4. 提供单个文件删除与整库清空接口，删除后在后台清理不再被引用的图片。
+ *
+ * 各接口的 collection 参数缺省时作用于默认集合 (default)。
  */
 @RestController
 @RequestMapping("/api/docs")
 public class DocumentController {
 
-    private final DocumentService documentService;
-    private final IndexService indexService;
+    private static final Logger log = LoggerFactory.getLogger(DocumentController.class);
 
-    public DocumentController(DocumentService documentService, IndexService indexService) {
-        this.documentService = documentService;
-        this.indexService = indexService;
+    private final CollectionService collectionService;
+    private final IngestionService ingestionService;
+    private final ImageBlobSweeper imageBlobSweeper;
+    private final VectorIndexReport vectorIndexReport;
+    private final VectorIndexConfig vectorIndexConfig;
+    private final Durability defaultDurability;
+
+    public DocumentController(CollectionService collectionService, IngestionService ingestionService,
+                              ImageBlobSweeper imageBlobSweeper,
+                              VectorIndexReport vectorIndexReport, VectorIndexConfig vectorIndexConfig,
+                              @Value("${bmad.index.commit.default-durability:visible}") String defaultDurability) {
+        this.collectionService = collectionService;
+        this.ingestionService = ingestionService;
+        this.imageBlobSweeper = imageBlobSweeper;
+        this.vectorIndexReport = vectorIndexReport;
+        this.vectorIndexConfig = vectorIndexConfig;
+        this.defaultDurability = Durability.parse(defaultDurability, Durability.VISIBLE);
     }
 
     /**
-     * 批量上传、解析并索引文档。
+     * 批量上传文档。
+     * 文件落盘后立即返回任务 ID，解析与索引由 IngestionService 在后台流水线中完成。
+     * 
+     * @param durability 持久化级别 (async / visible / durable)，缺省使用 bmad.index.commit.default-durability
+     * @param collection 目标集合，不存在时自动创建
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> uploadDocuments(@RequestParam("files") MultipartFile[] files) {
+    public ResponseEntity<Map<String, Object>> uploadDocuments(@RequestParam("files") MultipartFile[] files,
+                                                               @RequestParam(value = "durability", required = false) String durability,
+                                                               @RequestParam(value = "collection", required = false) String collection) {
         Map<String, Object> response = new HashMap<>();
-        int successCount = 0;
-        int failCount = 0;
-        StringBuilder errorLog = new StringBuilder();
-
-        for (MultipartFile file : files) {
-            try {
-                // 1. 解析
-                List<DocumentSegment> segments = documentService.parseDocument(file);
-                
-                // 2. 索引
-                String filename = file.getOriginalFilename();
-                if (filename == null) {
-                    filename = "unknown";
-                }
-                indexService.indexDocument(filename, segments);
-                successCount++;
-            } catch (Exception e) {
-                e.printStackTrace(); // 打印完整堆栈以便调试
-                failCount++;
-                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
-                errorLog.append(file.getOriginalFilename()).append(": ").append(errorMsg).append("; ");
-            }
+        Durability level;
+        try {
+            level = Durability.parse(durability, defaultDurability);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", "不支持的持久化级别: " + durability);
+            return ResponseEntity.badRequest().body(response);
+        }
+        IngestionJob job;
+        try {
+            job = ingestionService.submit(files, collection, level);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            log.error("打开集合失败: {}", collection, e);
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(500).body(response);
         }
 
-        response.put("success", failCount == 0);
-        response.put("successCount", successCount);
-        response.put("failCount", failCount);
-        if (failCount > 0) {
-            response.put("error", errorLog.toString());
+        response.put("success", true);
+        response.put("jobId", job.getJobId());
+        response.put("fileCount", job.getTotalFiles());
+        response.put("durability", level);
+        response.put("collection", job.getCollection());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * 查询入库任务状态，包含每个文件所处的阶段与进度。
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJob> getJobStatus(@PathVariable("jobId") String jobId) {
+        IngestionJob job = ingestionService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
         }
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(job);
     }
 
     /**
      * 接口：根据关键词搜索知识库。
+     * 各阶段耗时（查询向量化、向量召回、关键词召回、融合、结果加载）通过 Server-Timing 响应头返回。
+     * 
+     * @param query 查询语句
+     * @param fields 逗号分隔的返回字段（如 filename,anchor），缺省时返回全部字段
+     * @param mode 检索模式 (hybrid / vector / keyword)，缺省为 hybrid
+     * @param collections 逗号分隔的集合名，all 表示全部集合；多个集合并行检索后按融合得分合并
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Map<String, Object>>> searchDocs(@RequestParam("q") String query) {
+    public ResponseEntity<List<SearchResult>> searchDocs(@RequestParam("q") String query,
+                                                         @RequestParam(value = "fields", required = false) String fields,
+                                                         @RequestParam(value = "mode", required = false) String mode,
+                                                         @RequestParam(value = "collections", required = false) String collections) {
+        SearchMode searchMode;
+        List<String> targets;
+        try {
+            searchMode = SearchMode.parse(mode);
+            targets = collectionService.resolve(collections);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
-            List<Map<String, Object>> results = indexService.search(query);
-            return ResponseEntity.ok(results);
+            Set<String> requestedFields = null;
+            if (fields != null && !fields.isBlank()) {
+                requestedFields = Arrays.stream(fields.split(","))
+                        .map(String::trim)
+                        .filter(f -> !f.isEmpty())
+                        .collect(Collectors.toSet());
+            }
+            SearchResponse response = collectionService.search(query, requestedFields, searchMode, targets);
+            return ResponseEntity.ok()
+                    .header("Server-Timing", formatServerTiming(response))
+                    .body(response.getResults());
         } catch (Exception e) {
-            e.printStackTrace(); // Log error for debugging
+            log.error("检索失败: {}", query, e);
             return ResponseEntity.status(500).build();
         }
     }
 
+    private String formatServerTiming(SearchResponse response) {
+        return response.getTimings().entrySet().stream()
+                .map(e -> String.format(Locale.ROOT, "%s;dur=%.3f", e.getKey(), e.getValue()))
+                .collect(Collectors.joining(", "))
+                + ", fusion-mode;desc=\"" + response.getFusionMode() + "\"";
+    }
+
     /**
-     * 获取所有已解析并索引的文件名列表。
+     * 分页获取已索引文件目录（文件名、子分块数、来源类型、入库时间），按文件名排序。
+     * 
+     * @param offset 起始位置
+     * @param limit 每页条数
+     * @param collection 集合名
      */
     @GetMapping("/list")
-    public ResponseEntity<List<String>> listDocuments() {
+    public ResponseEntity<Map<String, Object>> listDocuments(@RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                             @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                             @RequestParam(value = "collection", required = false) String collection) {
+        IndexService indexService = collectionService.get(collection);
+        if (indexService == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            List<DocumentCatalogEntry> catalog = indexService.getCatalog();
+            int from = Math.min(Math.max(offset, 0), catalog.size());
+            int to = Math.min(from + Math.max(limit, 0), catalog.size());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("total", catalog.size());
+            response.put("offset", from);
+            response.put("limit", limit);
+            response.put("items", catalog.subList(from, to));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("获取文档目录失败", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * 获取索引规模统计（磁盘占用、父/子文档数）。
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> indexStats(@RequestParam(value = "collection", required = false) String collection) {
+        IndexService indexService = collectionService.get(collection);
+        if (indexService == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(indexService.getIndexStats());
+        } catch (Exception e) {
+            log.error("获取索引统计失败", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * 列出全部集合及其索引规模统计。
+     */
+    @GetMapping("/collections")
+    public ResponseEntity<Map<String, Object>> listCollections() {
         try {
-            List<String> filenames = indexService.getAllIndexedDocuments();
-            return ResponseEntity.ok(filenames);
+            Map<String, Object> response = new LinkedHashMap<>();
+            for (String name : collectionService.names()) {
+                response.put(name, collectionService.get(name).getIndexStats());
+            }
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("获取集合列表失败", e);
             return ResponseEntity.status(500).build();
         }
     }
 
     /**
-     * 清空索引库。
+     * 向量编码对比报告：用当前索引中的向量，对比 float32 与 int8 量化在不同 M / beamWidth 下的召回率、延迟与体积。
+     * 
+     * @param queries 查询条数
+     * @param k 近邻数
+     * @param maxVectors 最多抽取的向量数
+     * @param m 逗号分隔的 M 候选值，缺省使用当前配置
+     * @param beamWidth 逗号分隔的 beamWidth 候选值，缺省使用当前配置
+     */
+    @GetMapping("/vector-report")
+    public ResponseEntity<Map<String, Object>> vectorReport(@RequestParam(value = "queries", defaultValue = "100") int queries,
+                                                            @RequestParam(value = "k", defaultValue = "10") int k,
+                                                            @RequestParam(value = "maxVectors", defaultValue = "20000") int maxVectors,
+                                                            @RequestParam(value = "m", required = false) String m,
+                                                            @RequestParam(value = "beamWidth", required = false) String beamWidth) {
+        try {
+            List<Integer> ms = parseInts(m, vectorIndexConfig.getM());
+            List<Integer> beamWidths = parseInts(beamWidth, vectorIndexConfig.getBeamWidth());
+            List<VectorIndexReport.Candidate> candidates = new ArrayList<>();
+            for (String quantization : List.of("none", "int8")) {
+                for (int mValue : ms) {
+                    for (int beamValue : beamWidths) {
+                        candidates.add(new VectorIndexReport.Candidate(quantization, mValue, beamValue));
+                    }
+                }
+            }
+            return ResponseEntity.ok(vectorIndexReport.run(maxVectors, queries, k, candidates));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("生成向量编码报告失败", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    private static List<Integer> parseInts(String value, int defaultValue) {
+        if (value == null || value.isBlank()) {
+            return List.of(defaultValue);
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(v -> !v.isEmpty())
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 删除单个文件的全部索引数据。
+     * 文件名通过查询参数传递，避免文件名中的点号、空格等字符与路径匹配冲突。
+     */
+    @DeleteMapping("/file")
+    public ResponseEntity<Map<String, Object>> deleteDocument(@RequestParam("filename") String filename,
+                                                              @RequestParam(value = "collection", required = false) String collection) {
+        Map<String, Object> response = new HashMap<>();
+        IndexService indexService = collectionService.get(collection);
+        if (indexService == null) {
+            response.put("success", false);
+            response.put("error", "集合不存在: " + collection);
+            return ResponseEntity.status(404).body(response);
+        }
+        try {
+            if (!indexService.deleteDocument(filename)) {
+                response.put("success", false);
+                response.put("error", "文件不存在: " + filename);
+                return ResponseEntity.status(404).body(response);
+            }
+            imageBlobSweeper.request();
+            response.put("success", true);
+            response.put("message", "文件索引已删除");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("删除文件索引失败: {}", filename, e);
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+
+    /**
+     * 清空集合的索引库。
      */
     @DeleteMapping("/clear")
-    public ResponseEntity<Map<String, Object>> clearIndex() {
+    public ResponseEntity<Map<String, Object>> clearIndex(@RequestParam(value = "collection", required = false) String collection) {
         Map<String, Object> response = new HashMap<>();
+        IndexService indexService = collectionService.get(collection);
+        if (indexService == null) {
+            response.put("success", false);
+            response.put("error", "集合不存在: " + collection);
+            return ResponseEntity.status(404).body(response);
+        }
         try {
             indexService.deleteAll();
+            imageBlobSweeper.request();
             response.put("success", true);
             response.put("message", "索引库已成功清空");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("清空索引失败", e);
             response.put("success", false);
             response.put("error", e.getMessage());
             return ResponseEntity.status(500).body(response);
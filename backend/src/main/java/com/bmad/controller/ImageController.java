@@ -0,0 +1,58 @@
+package com.bmad.controller;
+
+import com.bmad.service.ImageBlobStore;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片控制器。
+ * 
+ * 职责：
+ * 1. 按内容哈希 ID 提供图片原始字节，检索结果中只携带 ID，前端按需加载。
+ * 2. 图片内容与 ID 一一对应、永不变化，因此以 ID 作为强 ETag 并允许长期缓存。
+ */
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    private final ImageBlobStore imageBlobStore;
+
+    public ImageController(ImageBlobStore imageBlobStore) {
+        this.imageBlobStore = imageBlobStore;
+    }
+
+    /**
+     * 接口：获取图片字节。
+     * 请求携带匹配的 If-None-Match 时直接返回 304。
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Resource> getImage(@PathVariable("id") String id, WebRequest request) throws IOException {
+        Path path = imageBlobStore.get(id);
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        if (request.checkNotModified(id)) {
+            return ResponseEntity.status(304).eTag(id).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(id)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(imageBlobStore.contentType(path)))
+                .body(new FileSystemResource(path));
+    }
+}
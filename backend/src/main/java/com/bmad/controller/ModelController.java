@@ -25,6 +25,7 @@ public class ModelController {
 
     /**
      * 接口：获取模型当前加载状态。
+     * 同时返回原生内存占用（映射/复制字节数、驻留字节数、加载耗时）与推理上下文池使用情况。
      * @return 包含加载状态的 JSON 响应
      */
     @GetMapping("/status")
@@ -32,9 +33,20 @@ public class ModelController {
         Map<String, Object> response = new HashMap<>();
         response.put("isLoaded", modelService.isLoaded());
         response.put("handshake", modelService.checkStatus());
+        response.put("memory", modelService.getMemoryStats());
+        response.put("contexts", modelService.getContextStats());
         return response;
     }
 
+    /**
+     * 接口：获取向量缓存的命中统计。
+     * @return 包含命中/未命中计数的 JSON 响应
+     */
+    @GetMapping("/cache")
+    public Map<String, Object> getCacheStats() {
+        return modelService.getEmbeddingCacheStats();
+    }
+
     /**
      * 接口：请求加载模型。
      * @return 包含加载结果信息的 JSON 响应
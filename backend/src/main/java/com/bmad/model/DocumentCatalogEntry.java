@@ -0,0 +1,41 @@
+package com.bmad.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 文档目录条目。
+ * 每个已索引文件一条，数据来自文件登记文档上的 doc values，读取时无需加载任何分块。
+ */
+public class DocumentCatalogEntry {
+
+    private final String filename;
+    @JsonProperty("chunk_count")
+    private final int chunkCount;
+    @JsonProperty("source_type")
+    private final String sourceType;
+    @JsonProperty("ingested_at")
+    private final long ingestedAt;
+
+    public DocumentCatalogEntry(String filename, int chunkCount, String sourceType, long ingestedAt) {
+        this.filename = filename;
+        this.chunkCount = chunkCount;
+        this.sourceType = sourceType;
+        this.ingestedAt = ingestedAt;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public String getSourceType() {
+        return sourceType;
+    }
+
+    public long getIngestedAt() {
+        return ingestedAt;
+    }
+}
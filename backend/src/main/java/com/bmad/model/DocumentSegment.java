@@ -10,7 +10,7 @@ import java.util.Map;
 public class DocumentSegment {
     
     private String content;
-    private String imageData; // Base64 encoded image data
+    private byte[] imageData; // Encoded image bytes (PNG/JPEG), persisted to ImageBlobStore at index time
     private Map<String, Object> metadata;
 
     public DocumentSegment() {
@@ -22,7 +22,7 @@ public class DocumentSegment {
         this.metadata = new HashMap<>();
     }
 
-    public DocumentSegment(String content, String imageData) {
+    public DocumentSegment(String content, byte[] imageData) {
         this.content = content;
         this.imageData = imageData;
         this.metadata = new HashMap<>();
@@ -41,11 +41,11 @@ public class DocumentSegment {
         this.content = content;
     }
 
-    public String getImageData() {
+    public byte[] getImageData() {
         return imageData;
     }
 
-    public void setImageData(String imageData) {
+    public void setImageData(byte[] imageData) {
         this.imageData = imageData;
     }
 
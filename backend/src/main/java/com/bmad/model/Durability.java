@@ -0,0 +1,37 @@
+package com.bmad.model;
+
+import java.util.Locale;
+
+/**
+ * 写入请求的持久化级别。
+ * 索引提交由后台按时间或文档数合并执行（组提交），各级别决定写入请求在何时视为完成。
+ */
+public enum Durability {
+
+    /**
+     * 写入 IndexWriter 后立即返回，可见性与持久化都交给后台刷新和组提交。
+     */
+    ASYNC,
+
+    /**
+     * 写前日志落盘并刷新 NRT 搜索器后返回：写入立即可被检索，崩溃后可由日志重放恢复。
+     */
+    VISIBLE,
+
+    /**
+     * 等待包含本次写入的 Lucene 提交 (fsync) 完成后返回。
+     */
+    DURABLE;
+
+    /**
+     * 解析请求参数（大小写不敏感），为空时返回默认级别。
+     *
+     * @throws IllegalArgumentException 取值不合法
+     */
+    public static Durability parse(String value, Durability defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
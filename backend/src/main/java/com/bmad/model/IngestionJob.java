@@ -0,0 +1,173 @@
+package com.bmad.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步入库任务模型。
+ * 一次上传请求对应一个任务，任务内按文件记录当前所处的流水线阶段与进度。
+ */
+public class IngestionJob {
+
+    /**
+     * 单个文件所处的流水线阶段。
+     */
+    public enum Stage {
+        QUEUED, PARSING, CHUNKING, EMBEDDING, INDEXING, DONE, FAILED
+    }
+
+    private final String jobId;
+    private final long createdAt;
+    private final Durability durability;
+    private final String collection;
+    private final List<FileProgress> files = new ArrayList<>();
+
+    public IngestionJob(Durability durability, String collection) {
+        this.jobId = UUID.randomUUID().toString();
+        this.createdAt = System.currentTimeMillis();
+        this.durability = durability;
+        this.collection = collection;
+    }
+
+    public FileProgress addFile(String filename) {
+        FileProgress progress = new FileProgress(filename);
+        files.add(progress);
+        return progress;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public List<FileProgress> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public int getTotalFiles() {
+        return files.size();
+    }
+
+    public int getSuccessCount() {
+        return (int) files.stream().filter(f -> f.getStage() == Stage.DONE).count();
+    }
+
+    public int getFailCount() {
+        return (int) files.stream().filter(f -> f.getStage() == Stage.FAILED).count();
+    }
+
+    public boolean isFinished() {
+        return getSuccessCount() + getFailCount() == files.size();
+    }
+
+    /**
+     * 汇总任务状态：RUNNING / COMPLETED / COMPLETED_WITH_ERRORS。
+     */
+    public String getStatus() {
+        if (!isFinished()) {
+            return "RUNNING";
+        }
+        return getFailCount() == 0 ? "COMPLETED" : "COMPLETED_WITH_ERRORS";
+    }
+
+    /**
+     * 单个文件的处理进度。各阶段由不同的工作线程更新，字段均为线程安全。
+     */
+    public static class FileProgress {
+
+        private final String filename;
+        private volatile Stage stage = Stage.QUEUED;
+        private volatile String error;
+        private volatile boolean unchanged;
+        private volatile int segmentCount;
+        private volatile int chunkCount;
+        private final AtomicInteger embeddedCount = new AtomicInteger();
+        private final AtomicInteger indexedCount = new AtomicInteger();
+
+        public FileProgress(String filename) {
+            this.filename = filename;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public void setStage(Stage stage) {
+            // 终态不可被后续批次的阶段更新覆盖
+            if (this.stage != Stage.FAILED && this.stage != Stage.DONE) {
+                this.stage = stage;
+            }
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void fail(String error) {
+            this.error = error;
+            setStage(Stage.FAILED);
+        }
+
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * 文件内容与已索引版本一致，无需重新入库，直接视为完成。
+         */
+        public void markUnchanged() {
+            this.unchanged = true;
+            setStage(Stage.DONE);
+        }
+
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        public void setSegmentCount(int segmentCount) {
+            this.segmentCount = segmentCount;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public void setChunkCount(int chunkCount) {
+            this.chunkCount = chunkCount;
+        }
+
+        public int getEmbeddedCount() {
+            return embeddedCount.get();
+        }
+
+        public void addEmbedded(int count) {
+            embeddedCount.addAndGet(count);
+        }
+
+        public int getIndexedCount() {
+            return indexedCount.get();
+        }
+
+        public void addIndexed(int count) {
+            indexedCount.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.bmad.model;
+
+import java.util.Locale;
+
+/**
+ * 检索模式：选择参与召回的路数。
+ */
+public enum SearchMode {
+
+    /**
+     * 向量召回与关键词召回并行执行后融合排序（默认）。
+     */
+    HYBRID,
+
+    /**
+     * 仅向量召回。
+     */
+    VECTOR,
+
+    /**
+     * 仅关键词召回 (BM25)。
+     */
+    KEYWORD;
+
+    /**
+     * 解析请求参数（大小写不敏感），为空时返回 HYBRID。
+     *
+     * @throws IllegalArgumentException 取值不合法
+     */
+    public static SearchMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return HYBRID;
+        }
+        return SearchMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
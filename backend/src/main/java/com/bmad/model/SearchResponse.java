@@ -0,0 +1,48 @@
+package com.bmad.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 检索响应模型。
+ * 除结果列表外，还记录本次检索各阶段（查询向量化、向量召回、关键词召回、融合、结果加载）的耗时，单位毫秒。
+ */
+public class SearchResponse {
+
+    private List<SearchResult> results = new ArrayList<>();
+    private Map<String, Double> timings = new LinkedHashMap<>();
+    private String fusionMode;
+
+    public List<SearchResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<SearchResult> results) {
+        this.results = results;
+    }
+
+    public synchronized Map<String, Double> getTimings() {
+        return new LinkedHashMap<>(timings);
+    }
+
+    public synchronized void setTimings(Map<String, Double> timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * 记录阶段耗时。向量召回在独立线程中执行，因此需要同步。
+     */
+    public synchronized void addTiming(String stage, long nanos) {
+        this.timings.put(stage, nanos / 1_000_000.0);
+    }
+
+    public String getFusionMode() {
+        return fusionMode;
+    }
+
+    public void setFusionMode(String fusionMode) {
+        this.fusionMode = fusionMode;
+    }
+}
@@ -0,0 +1,157 @@
+package com.bmad.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 检索结果模型。
+ * 只承载调用方通过 fields 参数请求的字段，未加载的字段为 null 且不会出现在 JSON 中。
+ * 文档元数据（页码、幻灯片编号、章节标题等）统一放在 metadata 中。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchResult {
+
+    private float score;
+    @JsonProperty("max_raw_score")
+    private float maxRawScore;
+    @JsonProperty("vector_score")
+    private Float vectorScore;
+    @JsonProperty("keyword_score")
+    private Float keywordScore;
+    // 命中所在的集合，跨集合检索时用于区分来源
+    private String collection;
+    private String filename;
+    @JsonProperty("parent_id")
+    private String parentId;
+    @JsonProperty("chunk_id")
+    private Integer chunkId;
+    private String content;
+    @JsonProperty("child_content")
+    private String childContent;
+    private String anchor;
+    @JsonProperty("image_id")
+    private String imageId;
+    private Map<String, String> metadata;
+
+    public SearchResult() {
+    }
+
+    public SearchResult(float score, float maxRawScore) {
+        this.score = score;
+        this.maxRawScore = maxRawScore;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+
+    public float getMaxRawScore() {
+        return maxRawScore;
+    }
+
+    public void setMaxRawScore(float maxRawScore) {
+        this.maxRawScore = maxRawScore;
+    }
+
+    public Float getVectorScore() {
+        return vectorScore;
+    }
+
+    public void setVectorScore(Float vectorScore) {
+        this.vectorScore = vectorScore;
+    }
+
+    public Float getKeywordScore() {
+        return keywordScore;
+    }
+
+    public void setKeywordScore(Float keywordScore) {
+        this.keywordScore = keywordScore;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(String parentId) {
+        this.parentId = parentId;
+    }
+
+    public Integer getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(Integer chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getChildContent() {
+        return childContent;
+    }
+
+    public void setChildContent(String childContent) {
+        this.childContent = childContent;
+    }
+
+    public String getAnchor() {
+        return anchor;
+    }
+
+    public void setAnchor(String anchor) {
+        this.anchor = anchor;
+    }
+
+    public String getImageId() {
+        return imageId;
+    }
+
+    public void setImageId(String imageId) {
+        this.imageId = imageId;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(Map<String, String> metadata) {
+        this.metadata = metadata;
+    }
+
+    public void addMetadata(String key, String value) {
+        if (this.metadata == null) {
+            this.metadata = new LinkedHashMap<>();
+        }
+        this.metadata.put(key, value);
+    }
+}
@@ -1,5 +1,9 @@
 package com.bmad.nativeapi;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 /**
  * JNI 桥接类 (Java Native Interface Bridge)
  * 
@@ -7,6 +11,16 @@ package com.bmad.nativeapi;
  * 它声明了本地方法 (native methods)，这些方法的具体实现位于 buildNative 任务生成的 .dll/.so 动态库中。
  */
 public class LlamaNative {
+
+    /** {@link #getMemoryStats()} 结果下标：以内存映射方式加载的模型字节数。 */
+    public static final int MEMORY_MAPPED_BYTES = 0;
+    /** {@link #getMemoryStats()} 结果下标：复制到堆外内存的模型字节数。 */
+    public static final int MEMORY_COPIED_BYTES = 1;
+    /** {@link #getMemoryStats()} 结果下标：模型权重当前驻留物理内存的字节数，-1 表示平台不支持查询。 */
+    public static final int MEMORY_MODEL_RESIDENT_BYTES = 2;
+    /** {@link #getMemoryStats()} 结果下标：进程常驻内存（含 JVM 堆），-1 表示平台不支持查询。 */
+    public static final int MEMORY_PROCESS_RESIDENT_BYTES = 3;
+
     static {
         /**
          * 静态加载本地库。
@@ -27,13 +41,22 @@ public class LlamaNative {
 
     /**
      * 模型加载：将大型语言模型加载至内存。
-     * 这是一个阻塞操作，本地层会根据路径读取文件内容并分配堆外内存。
+     * 这是一个阻塞操作，本地层会把文件内容完整复制到新分配的堆外内存中。
      * 
      * @param path 模型文件的全路径或相对路径。
      * @return 成功状态码：1 表示成功，0 表示失败（如路径错误或内存不足）。
      */
     public static native int loadModel(String path);
 
+    /**
+     * 内存映射加载：以只读方式映射模型文件，代替 {@link #loadModel(String)} 的完整复制。
+     * 页面在首次访问时才载入物理内存，并通过页缓存与其他映射同一文件的进程共享。
+     * 
+     * @param path 模型文件的全路径或相对路径。
+     * @return 1 表示成功，0 表示文件不存在或无法映射。
+     */
+    public static native int mapModel(String path);
+
     /**
      * 资源释放：清理本地内存占用。
      * 必须显式调用！因为 Java GC 无法管理由 malloc/new 分配的堆外内存。
@@ -41,6 +64,13 @@ public class LlamaNative {
      */
     public static native void freeModel();
 
+    /**
+     * 原生内存统计，用于评估主机内存规格。
+     * 
+     * @return 长度为 4 的数组，下标见 MEMORY_* 常量。
+     */
+    public static native long[] getMemoryStats();
+
     /**
      * 向量化 (Embedding)：将文本转换为数值向量。
      * 
@@ -48,4 +78,70 @@ public class LlamaNative {
      * @return float 数组，代表该文本的语义向量（通常为 384, 768 或 1024 维）。
      */
     public static native float[] getEmbedding(String text);
+
+    /**
+     * 批量向量化 (Batched Embedding)：一次 JNI 调用完成整批文本的向量化。
+     * 
+     * 所有向量按行优先顺序写入同一个连续数组：第 i 条文本的向量位于
+     * [i * dim, (i + 1) * dim) 区间，其中 dim = 返回数组长度 / texts.length。
+     * 相比逐条调用 {@link #getEmbedding(String)}，可显著减少 JNI 往返与数组分配次数。
+     * 
+     * @param texts 输入文本数组，null 元素对应全零向量。
+     * @return 连续的 float 数组，长度为 texts.length * dim。
+     */
+    public static native float[] getEmbeddings(String[] texts);
+
+    /**
+     * 向量维数：返回当前模型输出向量的维数。
+     * 应用层以此为准校验索引中 vector 字段的维数，而不是在 Java 代码中硬编码。
+     * 
+     * @return 向量维数（如 128、384）。
+     */
+    public static native int getEmbeddingDimension();
+
+    /**
+     * 创建推理上下文池：重建 count 个共享同一份模型权重的独立推理上下文。
+     * 
+     * 权重只读共享，每个上下文持有自己的可变状态（KV cache、计算缓冲区），
+     * 因此不同上下文上的 {@link #getEmbeddingsInContext(int, String[])} 可以在多个线程中并行执行。
+     * 未创建上下文池时，{@link #getEmbedding(String)} 与 {@link #getEmbeddings(String[])} 在 0 号上下文上串行执行。
+     * 
+     * @param count 上下文数量。
+     * @return 实际创建的上下文数量，编号为 [0, count)。
+     */
+    public static native int createContexts(int count);
+
+    /**
+     * 释放推理上下文池。本地层会等待正在进行的推理结束后再释放。
+     */
+    public static native void freeContexts();
+
+    /**
+     * 在指定上下文上批量向量化，输出格式与 {@link #getEmbeddings(String[])} 相同。
+     * 同一上下文同一时刻只能被一个线程使用，调用方负责独占（见 EmbeddingService 的上下文租约）。
+     * 
+     * @param context 上下文编号，由 {@link #createContexts(int)} 分配。
+     * @param texts 输入文本数组，null 元素对应全零向量。
+     * @return 连续的 float 数组，长度为 texts.length * dim。
+     * @throws IllegalArgumentException 上下文编号无效时抛出。
+     */
+    public static native float[] getEmbeddingsInContext(int context, String[] texts);
+
+    /**
+     * 零拷贝批量向量化：本地层直接读写调用方持有的直接缓冲区 (direct buffer)。
+     * 
+     * 与 {@link #getEmbeddingsInContext(int, String[])} 相比，不经过 GetStringUTFChars 的字符串拷贝，
+     * 也不分配新的 float[]：第 i 条文本为 text 中 [offsets[i], offsets[i + 1]) 字节区间的 UTF-8 编码，
+     * 其向量写入 out 的 [i * dim, (i + 1) * dim) 区间。缓冲区均从起始位置访问，忽略 position / limit；
+     * IntBuffer 与 FloatBuffer 必须使用本机字节序。
+     * 
+     * @param context 上下文编号，由 {@link #createContexts(int)} 分配。
+     * @param text 直接 ByteBuffer，连续存放各条文本的 UTF-8 字节。
+     * @param offsets 直接 IntBuffer，至少 count + 1 个元素的字节偏移。
+     * @param count 文本条数。
+     * @param out 直接 FloatBuffer，容量至少为 count * dim。
+     * @return 写入的向量条数。
+     * @throws IllegalArgumentException 缓冲区不是直接缓冲区、容量不足或上下文编号无效时抛出。
+     */
+    public static native int getEmbeddingsDirect(int context, ByteBuffer text, IntBuffer offsets, int count, FloatBuffer out);
 }
@@ -0,0 +1,283 @@
+package com.bmad.service;
+
+import com.bmad.config.FusionConfig;
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResponse;
+import com.bmad.model.SearchResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 集合管理服务。
+ *
+ * 职责：
+ * 1. 维护集合名到独立 Lucene 索引的映射：每个集合拥有自己的 Directory、IndexWriter、NRT 搜索器、结果缓存与写前日志，
+ *    写入与提交互不阻塞。
+ * 2. 默认集合 (default) 即 Spring 注入的 IndexService，沿用 bmad.index.path 与 bmad.index.wal.path；
+ *    其余集合位于 bmad.collections.path 下以集合名命名的目录中（index 与 wal 两个子目录），上传时按需创建，启动时自动发现已有集合。
+ * 3. 跨集合检索：各集合在独立线程池中并行执行各自的检索（含融合与按父分块分组），
+ *    再以融合得分用 TopDocs.merge 合并出前 topN 条。
+ */
+@Service
+public class CollectionService {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectionService.class);
+
+    public static final String DEFAULT_COLLECTION = "default";
+
+    /**
+     * 检索请求中表示「全部集合」的参数值。
+     */
+    public static final String ALL_COLLECTIONS = "all";
+
+    // 集合名直接作为目录名，只允许小写字母、数字、下划线与连字符
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    @Value("${bmad.collections.path:collections}")
+    private String collectionsPath = "collections";
+
+    @Value("${bmad.collections.search-threads:4}")
+    private int searchThreads = 4;
+
+    private final IndexService defaultIndex;
+    private final FusionConfig fusionConfig;
+
+    // 按集合名排序，保证列表与跨集合合并时的分片顺序稳定
+    private final Map<String, IndexService> collections = new ConcurrentSkipListMap<>();
+    private ExecutorService searchExecutor;
+
+    public CollectionService(IndexService indexService, FusionConfig fusionConfig) {
+        this.defaultIndex = indexService;
+        this.fusionConfig = fusionConfig;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        collections.put(DEFAULT_COLLECTION, defaultIndex);
+        Path root = Paths.get(collectionsPath);
+        if (Files.isDirectory(root)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+                for (Path dir : dirs) {
+                    String name = dir.getFileName().toString();
+                    if (isValidName(name) && !collections.containsKey(name) && Files.isDirectory(dir.resolve("index"))) {
+                        open(name);
+                    }
+                }
+            }
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        searchExecutor = Executors.newFixedThreadPool(Math.max(1, searchThreads), r -> {
+            Thread t = new Thread(r, "collection-search-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("集合服务初始化完成，已加载集合: {}", collections.keySet());
+    }
+
+    /**
+     * 关闭默认集合以外的集合索引；默认集合由 Spring 管理其生命周期。
+     */
+    @PreDestroy
+    public void cleanup() {
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+        for (IndexService index : collections.values()) {
+            if (index == defaultIndex) {
+                continue;
+            }
+            try {
+                index.cleanup();
+            } catch (IOException e) {
+                log.warn("关闭集合索引失败: {} - {}", index.getCollection(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 集合名是否合法。"all" 在检索参数中表示全部集合，保留不可用作集合名。
+     */
+    public static boolean isValidName(String name) {
+        return name != null && NAME_PATTERN.matcher(name).matches() && !ALL_COLLECTIONS.equals(name);
+    }
+
+    /**
+     * 获取已存在的集合。
+     *
+     * @param name 集合名，null 或空白表示默认集合
+     * @return 集合索引，不存在时返回 null
+     */
+    public IndexService get(String name) {
+        return collections.get(normalize(name));
+    }
+
+    /**
+     * 获取集合，不存在时创建其索引目录与写入器。
+     *
+     * @param name 集合名，null 或空白表示默认集合
+     * @throws IllegalArgumentException 集合名不合法
+     */
+    public IndexService getOrCreate(String name) throws IOException {
+        String key = normalize(name);
+        IndexService index = collections.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (!isValidName(key)) {
+            throw new IllegalArgumentException("不合法的集合名: " + name);
+        }
+        synchronized (this) {
+            index = collections.get(key);
+            return index != null ? index : open(key);
+        }
+    }
+
+    /**
+     * 全部集合名，按名称排序。
+     */
+    public List<String> names() {
+        return new ArrayList<>(collections.keySet());
+    }
+
+    /**
+     * 解析检索请求中的集合参数：缺省为默认集合，"all" 表示全部集合，否则为逗号分隔的集合名。
+     *
+     * @throws IllegalArgumentException 集合不存在
+     */
+    public List<String> resolve(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return List.of(DEFAULT_COLLECTION);
+        }
+        if (ALL_COLLECTIONS.equals(spec.trim())) {
+            return names();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String part : spec.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!collections.containsKey(name)) {
+                throw new IllegalArgumentException("集合不存在: " + name);
+            }
+            names.add(name);
+        }
+        if (names.isEmpty()) {
+            return List.of(DEFAULT_COLLECTION);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 在一个或多个集合中检索。单个集合时直接走该集合的检索路径；
+     * 多个集合时各集合并行检索，再按融合得分合并，每条结果带有其所在集合名。
+     *
+     * @param queryString 用户查询
+     * @param returnFields 需要返回的存储字段，null 表示全部
+     * @param mode 检索模式
+     * @param names 目标集合，须为 resolve 的返回值
+     */
+    public SearchResponse search(String queryString, Set<String> returnFields, SearchMode mode, List<String> names) throws Exception {
+        if (names.size() == 1) {
+            return require(names.get(0)).search(queryString, returnFields, mode);
+        }
+        log.debug("跨集合检索: {} -> {}", queryString, names);
+        long start = System.nanoTime();
+        List<Future<SearchResponse>> futures = new ArrayList<>(names.size());
+        for (String name : names) {
+            IndexService index = require(name);
+            futures.add(searchExecutor.submit(() -> index.search(queryString, returnFields, mode)));
+        }
+        List<SearchResponse> shards = new ArrayList<>(futures.size());
+        try {
+            for (Future<SearchResponse> future : futures) {
+                shards.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<SearchResponse> future : futures) {
+                future.cancel(true);
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        long fanout = System.nanoTime() - start;
+
+        SearchResponse response = merge(shards, fusionConfig.getTopN());
+        response.addTiming("fanout", fanout);
+        response.addTiming("total", System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * 合并各集合的检索结果。各集合结果已按融合得分降序排列，以结果序号作为文档号、集合序号作为分片号构造 TopDocs，
+     * 由 TopDocs.merge 取前 topN 条；得分相同时按分片号与序号排序，结果稳定。
+     */
+    static SearchResponse merge(List<SearchResponse> shards, int topN) {
+        long start = System.nanoTime();
+        TopDocs[] topDocs = new TopDocs[shards.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<SearchResult> results = shards.get(shard).getResults();
+            ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+            for (int rank = 0; rank < scoreDocs.length; rank++) {
+                scoreDocs[rank] = new ScoreDoc(rank, results.get(rank).getScore(), shard);
+            }
+            topDocs[shard] = new TopDocs(new TotalHits(scoreDocs.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+        }
+        TopDocs merged = TopDocs.merge(topN, topDocs);
+
+        List<SearchResult> results = new ArrayList<>(merged.scoreDocs.length);
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            results.add(shards.get(scoreDoc.shardIndex).getResults().get(scoreDoc.doc));
+        }
+        SearchResponse response = new SearchResponse();
+        response.setResults(results);
+        response.setFusionMode(shards.isEmpty() ? null : shards.get(0).getFusionMode());
+        response.addTiming("merge", System.nanoTime() - start);
+        return response;
+    }
+
+    private IndexService require(String name) {
+        IndexService index = collections.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("集合不存在: " + name);
+        }
+        return index;
+    }
+
+    private IndexService open(String name) throws IOException {
+        Path dir = Paths.get(collectionsPath, name);
+        IndexService index = defaultIndex.openCollection(name, dir.resolve("index"), dir.resolve("wal"));
+        collections.put(name, index);
+        log.info("已打开集合: {} ({})", name, dir);
+        return index;
+    }
+
+    private static String normalize(String name) {
+        return name == null || name.isBlank() ? DEFAULT_COLLECTION : name.trim();
+    }
+}
@@ -1,7 +1,11 @@
 package com.bmad.service;
 
 import com.bmad.model.DocumentSegment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -9,6 +13,10 @@ import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.hwpf.usermodel.Paragraph;
 import org.apache.poi.hwpf.usermodel.Range;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
@@ -17,19 +25,28 @@ import org.apache.poi.xslf.usermodel.XSLFSlide;
 import org.apache.poi.xslf.usermodel.XSLFTextShape;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 /**
@@ -42,8 +59,48 @@ import java.util.stream.Collectors;
 @Service
 public class DocumentService {
 
+    /**
+     * PDF 并行解析线程池的并行度。
+     */
+    @Value("${bmad.parse.pdf-parallelism:0}")
+    private int pdfParallelism;
+
+    /**
+     * 单个解析任务最多处理的页数，页数不超过该值的 PDF 直接在调用线程中顺序解析。小于 1 时按 1 处理。
+     */
+    @Value("${bmad.parse.pdf-pages-per-task:32}")
+    private int pdfPagesPerTask = 32;
+
+    /**
+     * 是否以内存映射方式读取 PDF；并行解析时多个 PDDocument 可共享同一份页缓存。
+     */
+    @Value("${bmad.parse.pdf-memory-mapped:false}")
+    private boolean pdfMemoryMapped;
+
+    /**
+     * 文本格式单个片段的目标字符数，文件按段落边界切成多个片段逐步读取。
+     */
+    @Value("${bmad.parse.text-segment-chars:65536}")
+    private int textSegmentChars = 65536;
+
+    private ForkJoinPool pdfPool;
+
+    @PostConstruct
+    public void init() {
+        int parallelism = pdfParallelism > 0 ? pdfParallelism : Runtime.getRuntime().availableProcessors();
+        pdfPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pdfPool != null) {
+            pdfPool.shutdown();
+        }
+    }
+
     /**
      * 解析上传的文件。
+     * 上传内容先转存到临时文件，再按磁盘文件解析，避免在堆上保留整个文件的副本。
      * 
      * @param file 上传的多部分文件
      * @return 解析后的文档片段列表
@@ -53,110 +110,242 @@ public class DocumentService {
         String filename = file.getOriginalFilename();
         if (filename == null) return Collections.emptyList();
 
+        Path spooled = Files.createTempFile("bmad-parse-", ".part");
+        try {
+            file.transferTo(spooled);
+            return parseDocument(filename, spooled);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * 解析已落盘的文件。
+     * 各格式均直接基于文件读取：PDF 使用随机访问文件源，Office 文档使用基于文件的容器，文本格式逐行读取。
+     * 
+     * @param filename 原始文件名，用于判断格式
+     * @param path 文件在本地磁盘上的路径
+     * @return 解析后的文档片段列表
+     * @throws IOException 如果解析过程中出现错误
+     */
+    public List<DocumentSegment> parseDocument(String filename, Path path) throws IOException {
         String extension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-        
-        try (InputStream is = file.getInputStream()) {
-            switch (extension) {
-                case "pdf":
-                    return parsePdf(is);
-                case "docx":
-                    return parseDocx(is);
-                case "doc":
-                    return parseDoc(is);
-                case "pptx":
-                    return parsePptx(is);
-                case "md":
-                case "txt":
-                    String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                    DocumentSegment seg = new DocumentSegment(content);
-                    seg.addMetadata("source_type", extension);
-                    return Collections.singletonList(seg);
-                case "jpg":
-                case "jpeg":
-                case "png":
-                    return parseStandaloneImage(file, extension);
-                default:
-                    throw new IllegalArgumentException("不支持的文件格式: " + extension);
-            }
+        File file = path.toFile();
+
+        switch (extension) {
+            case "pdf":
+                return parsePdf(file);
+            case "docx":
+                return parseDocx(file);
+            case "doc":
+                return parseDoc(file);
+            case "pptx":
+                return parsePptx(file);
+            case "md":
+            case "txt":
+                return parseText(path, extension);
+            case "jpg":
+            case "jpeg":
+            case "png":
+                return parseStandaloneImage(file, filename, extension);
+            default:
+                throw new IllegalArgumentException("不支持的文件格式: " + extension);
         }
     }
 
     /**
      * 使用 PDFBox 3.0 解析 PDF 文件。
+     * 页数超过单个任务的页数上限时，按页区间拆分到 Fork-Join 线程池并行解析。
+     * 文件通过 RandomAccessReadBufferedFile（或内存映射）按需读取，不会整体载入堆内存。
      */
-    private List<DocumentSegment> parsePdf(InputStream is) throws IOException {
-        byte[] bytes = is.readAllBytes();
+    private List<DocumentSegment> parsePdf(File file) throws IOException {
+        PdfSource source = pdfMemoryMapped
+                ? () -> Loader.loadPDF(new RandomAccessReadMemoryMappedFile(file))
+                : () -> Loader.loadPDF(new RandomAccessReadBufferedFile(file));
+
+        int numPages;
+        try (PDDocument document = source.open()) {
+            numPages = document.getNumberOfPages();
+            if (numPages <= pagesPerTask()) {
+                return parsePdfPages(document, 1, numPages);
+            }
+        }
+
+        try {
+            return pdfPool().invoke(new PdfPageRangeTask(source, 1, numPages));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 逐行读取 Markdown / TXT 文件。
+     * 以空行（段落边界）为切分点，累计超过 textSegmentChars 后输出一个片段，
+     * 避免一次性把整个文件读成 byte[] 再复制为 String。
+     * 非 UTF-8 字节替换为 U+FFFD，GBK / Latin-1 等编码的文件不会整体解析失败。
+     * 片段仍汇总为列表返回，峰值堆占用与文件的文本量成正比，只是省去了整文件 byte[] 与 String 副本。
+     */
+    private List<DocumentSegment> parseText(Path path, String extension) throws IOException {
         List<DocumentSegment> segments = new ArrayList<>();
-        
-        try (PDDocument document = Loader.loadPDF(bytes)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            int numPages = document.getNumberOfPages();
-            
-            for (int i = 1; i <= numPages; i++) {
-                // 1. 提取文本
-                stripper.setStartPage(i);
-                stripper.setEndPage(i);
-                String text = stripper.getText(document).trim();
-                
-                if (!text.isEmpty()) {
-                    DocumentSegment seg = new DocumentSegment(text);
-                    seg.addMetadata("page_number", i);
-                    seg.addMetadata("source_type", "pdf");
-                    segments.add(seg);
+        StringBuilder buffer = new StringBuilder();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), decoder))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean paragraphBreak = line.isBlank();
+                // 超长段落没有空行可切时，退化为按行切分，保证单个片段大小有上限
+                if ((paragraphBreak && buffer.length() >= textSegmentChars) || buffer.length() >= textSegmentChars * 2) {
+                    addTextSegment(segments, buffer, extension);
+                }
+                if (buffer.length() > 0 || !paragraphBreak) {
+                    buffer.append(line).append('\n');
                 }
+            }
+        }
+        addTextSegment(segments, buffer, extension);
+        return segments;
+    }
 
-                // 2. 提取页面图片 (实验性)
-                PDPage page = document.getPage(i - 1);
-                PDResources resources = page.getResources();
-                for (COSName name : resources.getXObjectNames()) {
-                    if (resources.isImageXObject(name)) {
-                        PDImageXObject image = (PDImageXObject) resources.getXObject(name);
-                        BufferedImage bufferedImage = image.getImage();
-                        
-                        String base64 = encodeImageToBase64(bufferedImage, "png");
-                        // 为图片创建一个描述片段，方便检索
-                        String description = "PDF Image on Page " + i + " in " + name.getName();
-                        DocumentSegment imgSeg = new DocumentSegment(description, base64);
-                        imgSeg.addMetadata("page_number", i);
-                        imgSeg.addMetadata("source_type", "pdf_image");
-                        segments.add(imgSeg);
-                    }
+    private void addTextSegment(List<DocumentSegment> segments, StringBuilder buffer, String extension) {
+        String content = buffer.toString().trim();
+        buffer.setLength(0);
+        if (content.isEmpty()) {
+            return;
+        }
+        DocumentSegment seg = new DocumentSegment(content);
+        seg.addMetadata("source_type", extension);
+        segments.add(seg);
+    }
+
+    /**
+     * 解析 [startPage, endPage] 区间内的页面（页码从 1 开始），按页码顺序输出文本与图片片段。
+     * 每次调用使用独立的 PDFTextStripper，因此可在不同线程中针对各自的 PDDocument 并发执行。
+     */
+    private List<DocumentSegment> parsePdfPages(PDDocument document, int startPage, int endPage) throws IOException {
+        List<DocumentSegment> segments = new ArrayList<>();
+        PDFTextStripper stripper = new PDFTextStripper();
+
+        for (int i = startPage; i <= endPage; i++) {
+            // 1. 提取文本
+            stripper.setStartPage(i);
+            stripper.setEndPage(i);
+            String text = stripper.getText(document).trim();
+            
+            if (!text.isEmpty()) {
+                DocumentSegment seg = new DocumentSegment(text);
+                seg.addMetadata("page_number", i);
+                seg.addMetadata("source_type", "pdf");
+                segments.add(seg);
+            }
+
+            // 2. 提取页面图片 (实验性)
+            PDPage page = document.getPage(i - 1);
+            PDResources resources = page.getResources();
+            for (COSName name : resources.getXObjectNames()) {
+                if (resources.isImageXObject(name)) {
+                    PDImageXObject image = (PDImageXObject) resources.getXObject(name);
+                    BufferedImage bufferedImage = image.getImage();
+                    
+                    byte[] encoded = encodeImage(bufferedImage, "png");
+                    // 为图片创建一个描述片段，方便检索
+                    String description = "PDF Image on Page " + i + " in " + name.getName();
+                    DocumentSegment imgSeg = new DocumentSegment(description, encoded);
+                    imgSeg.addMetadata("page_number", i);
+                    imgSeg.addMetadata("source_type", "pdf_image");
+                    segments.add(imgSeg);
                 }
             }
         }
         return segments;
     }
 
-    private List<DocumentSegment> parseStandaloneImage(MultipartFile file, String extension) throws IOException {
-        try (InputStream is = file.getInputStream()) {
-            BufferedImage bufferedImage = ImageIO.read(is);
-            if (bufferedImage == null) {
-                throw new IOException("无法读取图片内容: " + file.getOriginalFilename());
+    /**
+     * 单页区间必须成为叶子任务，否则拆分无法终止。
+     */
+    private int pagesPerTask() {
+        return Math.max(1, pdfPagesPerTask);
+    }
+
+    private ForkJoinPool pdfPool() {
+        return pdfPool != null ? pdfPool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * 打开一个新的 PDDocument 实例。
+     * PDDocument 不是线程安全的，每个并行任务都必须持有自己的实例。
+     */
+    @FunctionalInterface
+    private interface PdfSource {
+        PDDocument open() throws IOException;
+    }
+
+    /**
+     * 页区间解析任务：区间足够小时直接解析，否则对半拆分。
+     * 合并时先左后右，保证结果与顺序解析的页码顺序一致。
+     */
+    private class PdfPageRangeTask extends RecursiveTask<List<DocumentSegment>> {
+
+        private final PdfSource source;
+        private final int startPage;
+        private final int endPage;
+
+        PdfPageRangeTask(PdfSource source, int startPage, int endPage) {
+            this.source = source;
+            this.startPage = startPage;
+            this.endPage = endPage;
+        }
+
+        @Override
+        protected List<DocumentSegment> compute() {
+            if (endPage - startPage + 1 <= pagesPerTask()) {
+                try (PDDocument document = source.open()) {
+                    return parsePdfPages(document, startPage, endPage);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
-            String base64 = encodeImageToBase64(bufferedImage, extension);
-             // 对于独立图片，使用文件名作为描述
-             String filename = file.getOriginalFilename();
-             String baseName = filename != null ? filename.substring(0, filename.lastIndexOf('.')) : "image";
-             DocumentSegment seg = new DocumentSegment("Image: " + baseName + " (" + filename + ")", base64);
-             seg.addMetadata("source_type", "image");
-             seg.addMetadata("filename", filename);
-             return Collections.singletonList(seg);
+
+            int mid = (startPage + endPage) >>> 1;
+            PdfPageRangeTask left = new PdfPageRangeTask(source, startPage, mid);
+            PdfPageRangeTask right = new PdfPageRangeTask(source, mid + 1, endPage);
+            right.fork();
+            List<DocumentSegment> segments = new ArrayList<>(left.compute());
+            segments.addAll(right.join());
+            return segments;
+        }
+    }
+
+    private List<DocumentSegment> parseStandaloneImage(File file, String filename, String extension) throws IOException {
+        BufferedImage bufferedImage = ImageIO.read(file);
+        if (bufferedImage == null) {
+            throw new IOException("无法读取图片内容: " + filename);
         }
+        byte[] encoded = encodeImage(bufferedImage, extension);
+        // 对于独立图片，使用文件名作为描述
+        String baseName = filename.substring(0, filename.lastIndexOf('.'));
+        DocumentSegment seg = new DocumentSegment("Image: " + baseName + " (" + filename + ")", encoded);
+        seg.addMetadata("source_type", "image");
+        seg.addMetadata("filename", filename);
+        return Collections.singletonList(seg);
     }
 
-    private String encodeImageToBase64(BufferedImage image, String format) throws IOException {
+    private byte[] encodeImage(BufferedImage image, String format) throws IOException {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             ImageIO.write(image, format, baos);
-            byte[] bytes = baos.toByteArray();
-            return Base64.getEncoder().encodeToString(bytes);
+            return baos.toByteArray();
         }
     }
 
     /**
      * 使用 Apache POI 解析 DOCX 文件。
      */
-    private List<DocumentSegment> parseDocx(InputStream is) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(is)) {
+    private List<DocumentSegment> parseDocx(File file) throws IOException {
+        // 以只读方式基于文件打开 OOXML 容器，按需读取 zip 条目；只读包用 revert() 释放
+        OPCPackage pkg = openPackage(file);
+        try {
+            XWPFDocument document = new XWPFDocument(pkg);
             List<XWPFParagraph> paragraphs = document.getParagraphs();
             List<DocumentSegment> segments = new ArrayList<>();
             String currentSectionHeader = null;
@@ -199,14 +388,17 @@ public class DocumentService {
             }
 
             return segments;
+        } finally {
+            pkg.revert();
         }
     }
 
     /**
      * 使用 Apache POI 解析 Word 97-2003 (.doc) 文件。
      */
-    private List<DocumentSegment> parseDoc(InputStream is) throws IOException {
-        try (HWPFDocument document = new HWPFDocument(is)) {
+    private List<DocumentSegment> parseDoc(File file) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file, true);
+             HWPFDocument document = new HWPFDocument(fs)) {
             Range range = document.getRange();
             List<DocumentSegment> segments = new ArrayList<>();
             int numParagraphs = range.numParagraphs();
@@ -236,9 +428,11 @@ public class DocumentService {
     /**
      * 使用 Apache POI 解析 PPTX 文件。
      */
-    private List<DocumentSegment> parsePptx(InputStream is) throws IOException {
+    private List<DocumentSegment> parsePptx(File file) throws IOException {
         List<DocumentSegment> segments = new ArrayList<>();
-        try (XMLSlideShow ppt = new XMLSlideShow(is)) {
+        OPCPackage pkg = openPackage(file);
+        try {
+            XMLSlideShow ppt = new XMLSlideShow(pkg);
             List<XSLFSlide> slides = ppt.getSlides();
             for (int i = 0; i < slides.size(); i++) {
                 XSLFSlide slide = slides.get(i);
@@ -259,7 +453,17 @@ public class DocumentService {
                     segments.add(seg);
                 }
             }
+        } finally {
+            pkg.revert();
         }
         return segments;
     }
+
+    private OPCPackage openPackage(File file) throws IOException {
+        try {
+            return OPCPackage.open(file, PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("无法打开 OOXML 文件: " + e.getMessage(), e);
+        }
+    }
 }
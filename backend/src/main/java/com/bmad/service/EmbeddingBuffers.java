@@ -0,0 +1,132 @@
+package com.bmad.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * 零拷贝 JNI 调用使用的直接缓冲区，由单个线程持有并复用。
+ *
+ * 职责：
+ * 1. 把一批文本直接编码为 UTF-8 写入直接 ByteBuffer，并在直接 IntBuffer 中记录每条文本的字节偏移，
+ *    编码过程不创建 byte[] 或中间字符串。
+ * 2. 提供容量足够的直接 FloatBuffer 接收原生层写出的向量。
+ * 3. 容量不足时按两倍扩容，之后一直复用；稳定状态下向量化热路径不再分配缓冲区。
+ *
+ * 非线程安全，配合 ThreadLocal 使用。
+ */
+final class EmbeddingBuffers {
+
+    /**
+     * 扩容超过该字节数的缓冲区在本次使用后不再保留，避免个别超长文本让线程长期占用大块直接内存。
+     */
+    static final int MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+
+    private ByteBuffer text = allocate(16 * 1024);
+    private IntBuffer offsets = allocate(64 * Integer.BYTES).asIntBuffer();
+    private FloatBuffer vectors = allocate(0).asFloatBuffer();
+    private int count;
+
+    /**
+     * 清空已写入的文本，开始新的一批。
+     */
+    void clear() {
+        text.clear();
+        count = 0;
+        offsets.put(0, 0);
+    }
+
+    /**
+     * 追加一条文本的 UTF-8 编码。与 String.getBytes(UTF_8) 一致，孤立的代理字符编码为 '?'。
+     */
+    void add(CharSequence s) {
+        int length = s.length();
+        ensureText(text.position() + length * 3);
+        ensureOffsets(count + 2);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                text.put((byte) c);
+            } else if (c < 0x800) {
+                text.put((byte) (0xC0 | (c >> 6)));
+                text.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    text.put((byte) (0xF0 | (codePoint >> 18)));
+                    text.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    text.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    text.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    text.put((byte) '?');
+                }
+            } else {
+                text.put((byte) (0xE0 | (c >> 12)));
+                text.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                text.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        offsets.put(++count, text.position());
+    }
+
+    /**
+     * 已追加的文本条数。
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * 文本字节缓冲区，第 i 条文本位于 [offsets[i], offsets[i + 1])。
+     */
+    ByteBuffer text() {
+        return text;
+    }
+
+    /**
+     * 字节偏移缓冲区，包含 count + 1 个有效元素。
+     */
+    IntBuffer offsets() {
+        return offsets;
+    }
+
+    /**
+     * 获取至少能容纳 floats 个 float 的输出缓冲区。
+     */
+    FloatBuffer vectors(int floats) {
+        if (vectors.capacity() < floats) {
+            vectors = allocate(Math.max(floats, vectors.capacity() * 2) * Float.BYTES).asFloatBuffer();
+        }
+        return vectors;
+    }
+
+    /**
+     * 是否有缓冲区扩容超过 {@link #MAX_RETAINED_BYTES}，调用方据此丢弃本实例。
+     */
+    boolean oversized() {
+        return text.capacity() > MAX_RETAINED_BYTES
+                || (long) vectors.capacity() * Float.BYTES > MAX_RETAINED_BYTES;
+    }
+
+    private void ensureText(int bytes) {
+        if (text.capacity() < bytes) {
+            ByteBuffer bigger = allocate(Math.max(bytes, text.capacity() * 2));
+            text.flip();
+            bigger.put(text);
+            text = bigger;
+        }
+    }
+
+    private void ensureOffsets(int ints) {
+        if (offsets.capacity() < ints) {
+            IntBuffer bigger = allocate(Math.max(ints, offsets.capacity() * 2) * Integer.BYTES).asIntBuffer();
+            bigger.put(0, offsets, 0, count + 1);
+            offsets = bigger;
+        }
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
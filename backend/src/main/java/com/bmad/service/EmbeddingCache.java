@@ -0,0 +1,369 @@
+package com.bmad.service;
+
+import com.bmad.config.ModelConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于内容哈希的向量缓存。
+ *
+ * 职责：
+ * 1. 以「模型标识 + 归一化文本」的 SHA-256 作为键，避免重复向量化相同的段落。
+ * 2. 内存层：容量受限的 LRU，命中时无需任何 IO。
+ * 3. 磁盘层：追加写入的内存映射文件，应用重启后依然有效。
+ *    写满时按最近访问顺序淘汰最久未用的记录，并把存活记录前移压实，腾出约四分之一的容量。
+ *    头部记录模型标识的摘要，模型变更后打开时整体重置，不再保留旧模型的向量。
+ *
+ * 磁盘文件布局：
+ * [int magic][int version][long end][32 字节模型摘要] 头部，之后是连续记录 [32 字节键][int dim][dim 个 float]。
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private static final int MAGIC = 0x424D4543; // "BMEC"
+    private static final int VERSION = 2;
+    private static final int MODEL_OFFSET = 16;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = MODEL_OFFSET + KEY_BYTES;
+    private static final String DATA_FILE = "embeddings.bin";
+
+    private final ModelConfig modelConfig;
+    private final int memoryEntries;
+    private final Path diskPath;
+    private final long diskMaxBytes;
+
+    private final Map<String, float[]> memoryTier;
+    // 键 -> 记录在映射文件中的起始偏移，按访问顺序排列以便写满时淘汰；由 this 保护
+    private final LinkedHashMap<String, Integer> diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private volatile int end = HEADER_BYTES;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EmbeddingCache(ModelConfig modelConfig,
+                          @Value("${bmad.embedding.cache.memory-entries:10000}") int memoryEntries,
+                          @Value("${bmad.embedding.cache.disk-path:embedding_cache}") String diskPath,
+                          @Value("${bmad.embedding.cache.disk-max-bytes:268435456}") long diskMaxBytes) {
+        this.modelConfig = modelConfig;
+        this.memoryEntries = memoryEntries;
+        this.diskPath = Paths.get(diskPath);
+        // 映射区域以 int 偏移寻址，单文件上限为 2GB
+        this.diskMaxBytes = Math.min(diskMaxBytes, Integer.MAX_VALUE);
+        this.memoryTier = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > EmbeddingCache.this.memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * 打开（或创建）磁盘层映射文件，并扫描已有记录重建索引。
+     * 磁盘层不可用时仅记录日志，缓存退化为纯内存模式。
+     */
+    @PostConstruct
+    public synchronized void open() {
+        if (diskMaxBytes <= HEADER_BYTES) {
+            return;
+        }
+        try {
+            Files.createDirectories(diskPath);
+            channel = FileChannel.open(diskPath.resolve(DATA_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, diskMaxBytes);
+
+            byte[] modelDigest = modelDigest();
+            byte[] storedDigest = new byte[KEY_BYTES];
+            mapped.get(MODEL_OFFSET, storedDigest);
+            if (mapped.getInt(0) == MAGIC && mapped.getInt(4) == VERSION && Arrays.equals(modelDigest, storedDigest)) {
+                end = (int) Math.min(mapped.getLong(8), diskMaxBytes);
+                rebuildIndex();
+            } else {
+                if (mapped.getInt(0) == MAGIC) {
+                    log.info("模型或缓存格式已变更，重置磁盘缓存");
+                }
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putLong(8, HEADER_BYTES);
+                mapped.put(MODEL_OFFSET, modelDigest);
+                end = HEADER_BYTES;
+            }
+            log.info("磁盘缓存已加载，记录数: {}", diskIndex.size());
+        } catch (IOException e) {
+            log.warn("磁盘缓存不可用，仅启用内存缓存: {}", e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (mapped != null) {
+            mapped.force();
+        }
+        closeQuietly();
+    }
+
+    /**
+     * 查询缓存。
+     *
+     * @param text 原始文本
+     * @return 命中时返回向量副本，未命中返回 null
+     */
+    public float[] get(String text) {
+        String key = keyOf(text);
+        float[] vector;
+        synchronized (memoryTier) {
+            vector = memoryTier.get(key);
+        }
+        if (vector != null) {
+            memoryHits.incrementAndGet();
+            return vector.clone();
+        }
+
+        vector = readFromDisk(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            synchronized (memoryTier) {
+                memoryTier.put(key, vector);
+            }
+            return vector.clone();
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存（内存层 + 磁盘层）。
+     */
+    public void put(String text, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+        String key = keyOf(text);
+        float[] copy = vector.clone();
+        synchronized (memoryTier) {
+            memoryTier.put(key, copy);
+        }
+        writeToDisk(key, copy);
+    }
+
+    /**
+     * 获取缓存命中统计。
+     */
+    public Map<String, Object> getStats() {
+        long memory = memoryHits.get();
+        long disk = diskHits.get();
+        long miss = misses.get();
+        long total = memory + disk + miss;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("memoryHits", memory);
+        stats.put("diskHits", disk);
+        stats.put("misses", miss);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (memory + disk) / total);
+        synchronized (memoryTier) {
+            stats.put("memoryEntries", memoryTier.size());
+        }
+        synchronized (this) {
+            stats.put("diskEntries", diskIndex.size());
+        }
+        stats.put("diskBytes", end);
+        return stats;
+    }
+
+    private float[] readFromDisk(String key) {
+        synchronized (this) {
+            Integer offset = diskIndex.get(key);
+            if (offset == null || mapped == null) {
+                return null;
+            }
+            int dim = mapped.getInt(offset + KEY_BYTES);
+            float[] vector = new float[dim];
+            int base = offset + KEY_BYTES + 4;
+            for (int i = 0; i < dim; i++) {
+                vector[i] = mapped.getFloat(base + i * 4);
+            }
+            return vector;
+        }
+    }
+
+    private synchronized void writeToDisk(String key, float[] vector) {
+        if (mapped == null || diskIndex.containsKey(key)) {
+            return;
+        }
+        int recordBytes = KEY_BYTES + 4 + vector.length * 4;
+        if ((long) HEADER_BYTES + recordBytes > diskMaxBytes) {
+            return;
+        }
+        if ((long) end + recordBytes > diskMaxBytes) {
+            compact(recordBytes);
+        }
+
+        int offset = end;
+        byte[] keyBytes = hexToBytes(key);
+        for (int i = 0; i < KEY_BYTES; i++) {
+            mapped.put(offset + i, keyBytes[i]);
+        }
+        mapped.putInt(offset + KEY_BYTES, vector.length);
+        int base = offset + KEY_BYTES + 4;
+        for (int i = 0; i < vector.length; i++) {
+            mapped.putFloat(base + i * 4, vector[i]);
+        }
+        end = offset + recordBytes;
+        // 记录写完后再推进头部的结束位置，崩溃时最多丢失最后一条未完成的记录
+        mapped.putLong(8, end);
+        diskIndex.put(key, offset);
+    }
+
+    /**
+     * 按访问顺序淘汰最久未用的记录，直到存活记录加上待写入记录不超过容量的四分之三，
+     * 再按偏移顺序把存活记录前移压实。整理期间头部的结束位置先置为空，崩溃时磁盘层视为空缓存。
+     */
+    private void compact(int required) {
+        long limit = HEADER_BYTES + (diskMaxBytes - HEADER_BYTES) * 3 / 4;
+        long live = end;
+        int evicted = 0;
+        Iterator<Integer> eldest = diskIndex.values().iterator();
+        while (eldest.hasNext() && live + required > limit) {
+            live -= recordBytes(eldest.next());
+            eldest.remove();
+            evicted++;
+        }
+
+        List<Map.Entry<String, Integer>> survivors = new ArrayList<>(diskIndex.entrySet());
+        survivors.sort(Map.Entry.comparingByValue());
+        mapped.putLong(8, HEADER_BYTES);
+        int write = HEADER_BYTES;
+        byte[] buffer = new byte[0];
+        for (Map.Entry<String, Integer> entry : survivors) {
+            int offset = entry.getValue();
+            int bytes = recordBytes(offset);
+            if (offset != write) {
+                if (buffer.length < bytes) {
+                    buffer = new byte[bytes];
+                }
+                mapped.get(offset, buffer, 0, bytes);
+                mapped.put(write, buffer, 0, bytes);
+                entry.setValue(write);
+            }
+            write += bytes;
+        }
+        end = write;
+        mapped.putLong(8, end);
+        log.info("磁盘缓存已整理，淘汰 {} 条，保留 {} 条", evicted, survivors.size());
+    }
+
+    private int recordBytes(int offset) {
+        return KEY_BYTES + 4 + mapped.getInt(offset + KEY_BYTES) * 4;
+    }
+
+    private void rebuildIndex() {
+        int offset = HEADER_BYTES;
+        byte[] keyBytes = new byte[KEY_BYTES];
+        while (offset + KEY_BYTES + 4 <= end) {
+            for (int i = 0; i < KEY_BYTES; i++) {
+                keyBytes[i] = mapped.get(offset + i);
+            }
+            int dim = mapped.getInt(offset + KEY_BYTES);
+            int recordBytes = KEY_BYTES + 4 + dim * 4;
+            if (dim <= 0 || offset + recordBytes > end) {
+                break;
+            }
+            diskIndex.put(bytesToHex(keyBytes), offset);
+            offset += recordBytes;
+        }
+        end = offset;
+    }
+
+    private void closeQuietly() {
+        mapped = null;
+        diskIndex.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响缓存语义
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * 计算缓存键：SHA-256(模型标识 + '\0' + 归一化文本)。
+     * 归一化会去除首尾空白并把连续空白折叠为单个空格，使排版差异不影响命中。
+     */
+    private String keyOf(String text) {
+        String normalized = text == null ? "" : text.trim().replaceAll("\\s+", " ");
+        String modelId = modelId();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return bytesToHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private String modelId() {
+        return modelConfig.getPath() != null ? modelConfig.getPath() : "";
+    }
+
+    /**
+     * 模型标识的 SHA-256，写入磁盘层头部，用于判断缓存是否属于当前模型。
+     */
+    private byte[] modelDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(modelId().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex, i * 2, i * 2 + 2, 16);
+        }
+        return Arrays.copyOf(bytes, KEY_BYTES);
+    }
+}
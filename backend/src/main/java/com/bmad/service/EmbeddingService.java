@@ -1,34 +1,365 @@
 package com.bmad.service;
 
+import com.bmad.config.ModelConfig;
 import com.bmad.nativeapi.LlamaNative;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
 /**
  * 本地 Embedding 服务。
  * 
  * 职责：
  * 1. 封装 LlamaNative 的 JNI 调用，提供文本向量化接口。
  * 2. 这里目前使用本地 Llama 模型的向量生成能力。
+ * 3. 提供批量向量化接口，按配置的批大小合并 JNI 调用。
+ * 4. 在 JNI 调用之前查询 EmbeddingCache，相同内容只向量化一次。
+ * 5. 管理原生推理上下文池：每次原生调用租用一个独占的上下文，不同线程的向量化可以并行执行。
+ *    上下文池在首次向量化时按 ModelConfig.contexts 创建，应用启动阶段不会加载原生库。
+ * 6. 通过每线程复用的直接缓冲区调用零拷贝 JNI 接口：文本直接编码为 UTF-8、向量由原生层直接写入，
+ *    不再经过 String[] / float[] 中转，热路径只分配返回给调用方的向量数组。
  */
 @Service
 public class EmbeddingService {
 
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingService.class);
+
+    // 每个线程复用的 JNI 直接缓冲区
+    private static final ThreadLocal<EmbeddingBuffers> BUFFERS = ThreadLocal.withInitial(EmbeddingBuffers::new);
+
+    /**
+     * 单次 JNI 批量调用包含的最大文本条数。
+     */
+    @Value("${bmad.embedding.batch-size:32}")
+    private int batchSize = 32;
+
+    private final EmbeddingCache embeddingCache;
+    private final PipelineMetrics metrics;
+    private final ModelConfig modelConfig;
+
+    // 模型输出向量维数，首次查询时从原生层读取；0 表示尚未获取
+    private volatile int dimension;
+
+    // 空闲的推理上下文编号；首次租用时创建上下文池，null 表示尚未创建
+    private volatile BlockingQueue<Integer> idleContexts;
+    private volatile int contextCount;
+
+    public EmbeddingService(EmbeddingCache embeddingCache) {
+        this(embeddingCache, PipelineMetrics.noop(), new ModelConfig());
+    }
+
+    @Autowired
+    public EmbeddingService(EmbeddingCache embeddingCache, PipelineMetrics metrics, ModelConfig modelConfig) {
+        this.embeddingCache = embeddingCache;
+        this.metrics = metrics;
+        this.modelConfig = modelConfig;
+    }
+
+    /**
+     * 推理上下文租约：在 close 之前独占一个原生推理上下文。
+     * 
+     * 需要连续执行多次向量化的调用方（例如一个入库文件的全部分块）可以只租用一次，
+     * 避免每批都重新排队；租约不是线程安全的，只应在租用它的线程中使用。
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final BlockingQueue<Integer> pool;
+        private final int context;
+        private boolean released;
+
+        private Lease(BlockingQueue<Integer> pool, int context) {
+            this.pool = pool;
+            this.context = context;
+        }
+
+        /**
+         * 在租用的上下文上将文本转换为向量。
+         */
+        public float[] getEmbedding(String text) {
+            if (text == null || text.trim().isEmpty()) {
+                return zeroVector();
+            }
+            return embedChunk(List.of(text), this).get(0);
+        }
+
+        /**
+         * 在租用的上下文上批量向量化，按 batchSize 切分 JNI 调用。
+         */
+        public List<float[]> embedBatch(List<String> texts) {
+            List<float[]> results = new ArrayList<>(texts.size());
+            for (int start = 0; start < texts.size(); start += batchSize) {
+                int end = Math.min(start + batchSize, texts.size());
+                results.addAll(embedChunk(texts.subList(start, end), this));
+            }
+            return results;
+        }
+
+        /**
+         * 租用的上下文编号。
+         */
+        public int getContext() {
+            return context;
+        }
+
+        /**
+         * 归还上下文，重复调用无副作用。
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                pool.add(context);
+            }
+        }
+    }
+
+    /**
+     * 租用一个推理上下文，所有上下文都在使用中时阻塞等待。
+     * 
+     * @return 需要在 try-with-resources 中关闭的租约
+     * @throws IllegalStateException 等待期间线程被中断
+     */
+    public Lease lease() {
+        BlockingQueue<Integer> pool = contextPool();
+        try {
+            return new Lease(pool, pool.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待推理上下文时被中断", e);
+        }
+    }
+
     /**
      * 将文本转换为向量。
      * 
      * @param text 输入文本
-     * @return 特征向量 (384维，根据 bmad_native.cpp 实现)
+     * @return 特征向量，维数由原生层模型决定（见 {@link #getDimension()}）
      */
     public float[] getEmbedding(String text) {
         if (text == null || text.trim().isEmpty()) {
-            return new float[384];
+            return zeroVector();
         }
-        
-        try {
-            return LlamaNative.getEmbedding(text);
-        } catch (Exception e) {
-            System.err.println("[EmbeddingService] 向量生成失败: " + e.getMessage());
-            return new float[384];
+        return embedChunk(List.of(text), null).get(0);
+    }
+
+    /**
+     * 批量将文本转换为向量。
+     * 
+     * 输入按 batchSize 切分，每批只发生一次 JNI 调用；空白文本与缓存命中的文本不进入原生层。
+     * 
+     * @param texts 输入文本列表
+     * @return 与输入一一对应的向量列表
+     */
+    public List<float[]> embedBatch(List<String> texts) {
+        List<float[]> results = new ArrayList<>(texts.size());
+        for (int start = 0; start < texts.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, texts.size());
+            results.addAll(embedChunk(texts.subList(start, end), null));
+        }
+        return results;
+    }
+
+    /**
+     * 获取向量缓存的命中统计。
+     */
+    public Map<String, Object> getCacheStats() {
+        return embeddingCache.getStats();
+    }
+
+    /**
+     * 获取推理上下文池的使用情况。
+     * 
+     * @return 上下文总数与当前空闲数；上下文池尚未创建时均为 0
+     */
+    public Map<String, Object> getContextStats() {
+        BlockingQueue<Integer> pool = idleContexts;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("contexts", pool == null ? 0 : contextCount);
+        stats.put("idle", pool == null ? 0 : pool.size());
+        return stats;
+    }
+
+    /**
+     * 获取批量向量化的批大小，供调用方按批收集待向量化的文本。
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 获取模型输出向量的维数。
+     * 
+     * @return 向量维数；原生库不可用时返回 0
+     */
+    public int getDimension() {
+        int dim = dimension;
+        if (dim == 0) {
+            try {
+                dim = LlamaNative.getEmbeddingDimension();
+                dimension = dim;
+            } catch (LinkageError e) {
+                // 原生库缺失或版本过旧时无法得知维数，由调用方跳过校验
+                return 0;
+            }
+        }
+        return dim;
+    }
+
+    private float[] zeroVector() {
+        return new float[Math.max(getDimension(), 1)];
+    }
+
+    /**
+     * 启动预热：创建上下文池，并在每个推理上下文上各执行一次合成文本的批量向量化。
+     * 合成文本长度不一，覆盖不同的批内形状；结果不写入向量缓存。
+     * 
+     * @param texts 每个上下文上向量化的文本条数
+     * @return 向量化的文本总数
+     */
+    public int warmup(int texts) {
+        List<String> samples = new ArrayList<>(texts);
+        for (int i = 0; i < texts; i++) {
+            samples.add("warmup " + i + " " + "lorem ipsum 检索 ".repeat(1 + i % 16));
+        }
+        contextPool();
+        int contexts = contextCount;
+        int dim = getDimension();
+        for (int c = 0; c < contexts; c++) {
+            // 空闲队列先进先出，依次租用即可轮流覆盖每个上下文
+            try (Lease lease = lease()) {
+                for (int start = 0; start < samples.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, samples.size());
+                    embedDirect(lease.getContext(), samples.subList(start, end), dim);
+                }
+            }
+        }
+        releaseOversizedBuffers();
+        return contexts * texts;
+    }
+
+    /**
+     * 应用关闭时释放原生推理上下文。
+     */
+    @PreDestroy
+    public void releaseContexts() {
+        if (idleContexts != null) {
+            LlamaNative.freeContexts();
+            idleContexts = null;
+        }
+    }
+
+    private BlockingQueue<Integer> contextPool() {
+        BlockingQueue<Integer> pool = idleContexts;
+        if (pool == null) {
+            synchronized (this) {
+                pool = idleContexts;
+                if (pool == null) {
+                    int requested = modelConfig.getContexts() > 0
+                            ? modelConfig.getContexts()
+                            : Runtime.getRuntime().availableProcessors();
+                    int created = LlamaNative.createContexts(requested);
+                    if (created <= 0) {
+                        throw new IllegalStateException("无法创建原生推理上下文");
+                    }
+                    pool = new ArrayBlockingQueue<>(created);
+                    for (int i = 0; i < created; i++) {
+                        pool.add(i);
+                    }
+                    contextCount = created;
+                    idleContexts = pool;
+                    log.info("已创建 {} 个原生推理上下文", created);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 向量化一批文本：空白文本与缓存命中的文本不进入原生层。
+     * 
+     * @param lease 调用方已持有的租约；为 null 时仅在确有文本需要送入模型时临时租用一个上下文
+     */
+    private List<float[]> embedChunk(List<String> texts, Lease lease) {
+        float[][] vectors = new float[texts.size()][];
+        List<String> pending = new ArrayList<>(texts.size());
+        int[] positions = new int[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                vectors[i] = zeroVector();
+            } else if ((vectors[i] = embeddingCache.get(text)) == null) {
+                positions[pending.size()] = i;
+                pending.add(text);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            Lease acquired = null;
+            try {
+                if (lease == null) {
+                    acquired = lease();
+                }
+                int context = (lease != null ? lease : acquired).getContext();
+                int dim = getDimension();
+                FloatBuffer packed = embedDirect(context, pending, dim);
+                for (int j = 0; j < pending.size(); j++) {
+                    float[] vector = new float[dim];
+                    packed.get(j * dim, vector);
+                    vectors[positions[j]] = vector;
+                    embeddingCache.put(pending.get(j), vector);
+                }
+                releaseOversizedBuffers();
+            } catch (Exception e) {
+                log.warn("批量向量生成失败: {}", e.getMessage());
+                for (int j = 0; j < pending.size(); j++) {
+                    vectors[positions[j]] = zeroVector();
+                }
+            } finally {
+                if (acquired != null) {
+                    acquired.close();
+                }
+            }
+        }
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * 在指定上下文上执行一次零拷贝批量向量化。
+     * 
+     * @return 当前线程复用的输出缓冲区，第 j 条文本的向量位于 [j * dim, (j + 1) * dim)；下次调用前有效
+     */
+    private FloatBuffer embedDirect(int context, List<String> texts, int dim) {
+        if (dim <= 0) {
+            throw new IllegalStateException("无法获取向量维数");
+        }
+        EmbeddingBuffers buffers = BUFFERS.get();
+        buffers.clear();
+        for (String text : texts) {
+            buffers.add(text);
+        }
+        FloatBuffer packed = buffers.vectors(texts.size() * dim);
+
+        long start = System.nanoTime();
+        LlamaNative.getEmbeddingsDirect(context, buffers.text(), buffers.offsets(), texts.size(), packed);
+        metrics.recordEmbeddingBatch(System.nanoTime() - start, texts.size());
+        return packed;
+    }
+
+    private void releaseOversizedBuffers() {
+        if (BUFFERS.get().oversized()) {
+            BUFFERS.remove();
         }
     }
 }
@@ -0,0 +1,164 @@
+package com.bmad.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 内容寻址的图片存储。
+ *
+ * 职责：
+ * 1. 以图片字节的 SHA-256 作为 ID 落盘，相同图片只保存一份。
+ * 2. 索引中只保存图片 ID，检索结果按需通过 /api/images/{id} 读取原始字节。
+ *
+ * 目录布局：{root}/{id 前两位}/{id}，避免单目录文件过多。
+ * 图片在文档删除或重新入库后不会立即删除，由 ImageBlobSweeper 按索引中的引用定期清理。
+ */
+@Component
+public class ImageBlobStore {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public ImageBlobStore(@Value("${bmad.blob.path:blob_store}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(root);
+    }
+
+    /**
+     * 保存图片字节，已存在时直接返回 ID。
+     *
+     * @param bytes 已编码的图片 (PNG/JPEG)
+     * @return 内容哈希 ID
+     */
+    public String put(byte[] bytes) throws IOException {
+        String id = hash(bytes);
+        Path target = resolve(id);
+        if (Files.exists(target)) {
+            // 刷新修改时间：已成为孤儿的图片被重新引用时，在宽限期内不会被清理
+            try {
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                return id;
+            } catch (NoSuchFileException e) {
+                // 恰好被清理，重新写入
+            }
+        }
+
+        Files.createDirectories(target.getParent());
+        // 先写临时文件再原子改名，并发写入同一图片时读者不会看到半截文件
+        Path temp = Files.createTempFile(target.getParent(), id, ".tmp");
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // 其他线程已写入同一内容
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return id;
+    }
+
+    /**
+     * 根据 ID 定位图片文件。
+     *
+     * @param id 内容哈希 ID
+     * @return 文件路径，ID 非法或文件不存在时返回 null
+     */
+    public Path get(String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        Path path = resolve(id);
+        return Files.exists(path) ? path : null;
+    }
+
+    /**
+     * 删除未被引用的图片。最近修改时间晚于 olderThanMillis 的图片可能属于尚未写入索引的文档，予以保留。
+     *
+     * @param liveIds 索引中仍被引用的图片 ID
+     * @param olderThanMillis 只删除修改时间早于该时间戳的图片
+     * @return 删除的图片数
+     */
+    public int sweep(Set<String> liveIds, long olderThanMillis) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root)) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard)) {
+                    for (Path blob : blobs) {
+                        String id = blob.getFileName().toString();
+                        if (!ID_PATTERN.matcher(id).matches() || liveIds.contains(id)) {
+                            continue;
+                        }
+                        try {
+                            if (Files.getLastModifiedTime(blob).toMillis() < olderThanMillis && Files.deleteIfExists(blob)) {
+                                deleted++;
+                            }
+                        } catch (NoSuchFileException e) {
+                            // 已被删除
+                        }
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 根据文件头判断图片的 MIME 类型。
+     */
+    public String contentType(Path path) throws IOException {
+        byte[] header = new byte[4];
+        int read;
+        try (InputStream is = Files.newInputStream(path)) {
+            read = is.readNBytes(header, 0, header.length);
+        }
+        if (read >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8) {
+            return "image/jpeg";
+        }
+        if (read >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        return "application/octet-stream";
+    }
+
+    private Path resolve(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
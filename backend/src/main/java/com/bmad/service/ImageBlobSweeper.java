@@ -0,0 +1,101 @@
+package com.bmad.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 图片存储清理器。
+ *
+ * 职责：
+ * 1. 汇总全部集合中仍被引用的图片 ID，删除图片存储中不再被引用的图片。
+ * 2. 按 bmad.blob.sweep.interval-min 周期执行；删除文件或清空集合后额外触发一次，重复的触发请求合并执行。
+ * 3. 修改时间在宽限期 (bmad.blob.sweep.grace-min) 内的图片保留，避免删除正在入库、尚未写入索引的文档的图片。
+ */
+@Component
+public class ImageBlobSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageBlobSweeper.class);
+
+    @Value("${bmad.blob.sweep.interval-min:60}")
+    private long intervalMinutes = 60;
+
+    @Value("${bmad.blob.sweep.grace-min:60}")
+    private long graceMinutes = 60;
+
+    private final CollectionService collectionService;
+    private final ImageBlobStore imageBlobStore;
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    public ImageBlobSweeper(CollectionService collectionService, ImageBlobStore imageBlobStore) {
+        this.collectionService = collectionService;
+        this.imageBlobStore = imageBlobStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "blob-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        if (intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::request, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 请求在后台执行一次清理；已有清理在排队时直接返回。
+     */
+    public void request() {
+        if (pending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pending.set(false);
+                try {
+                    sweep();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("图片存储清理失败: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 立即执行一次清理。
+     *
+     * @return 删除的图片数
+     */
+    public int sweep() throws IOException {
+        long start = System.nanoTime();
+        // 先记录截止时间再收集引用：收集期间新写入的图片修改时间晚于截止时间，不会被删除
+        long olderThan = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(graceMinutes);
+        Set<String> liveIds = new HashSet<>();
+        for (String name : collectionService.names()) {
+            collectionService.get(name).collectImageIds(liveIds);
+        }
+        int deleted = imageBlobStore.sweep(liveIds, olderThan);
+        log.debug("图片存储清理完成: 引用 {} 张，删除 {} 张，耗时 {} ms", liveIds.size(), deleted,
+                (System.nanoTime() - start) / 1_000_000);
+        return deleted;
+    }
+}
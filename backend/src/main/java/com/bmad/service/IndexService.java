@@ -1,10 +1,20 @@
 package com.bmad.service;
 
+import com.bmad.config.FusionConfig;
+import com.bmad.config.VectorIndexConfig;
+import com.bmad.model.DocumentCatalogEntry;
 import com.bmad.model.DocumentSegment;
+import com.bmad.model.Durability;
+import com.bmad.model.SearchResponse;
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResult;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
@@ -12,57 +22,360 @@ import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.VectorUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Lucene 索引服务类。
  * 
  * 职责：
  * 1. 负责管理本地向量检索和全文检索的索引库。
- * 2. 这里的实现使用 Lucene 9.x 的 KnnVectorField 支持 HNSW 向量索引。
- * 3. 实现了混合检索 (Hybrid Search)，结合向量相似度和关键词匹配。
+ * 2. 这里的实现使用 Lucene 9.x 的 KnnFloatVectorField 支持 HNSW 向量索引，编码格式（含 int8 量化）与图参数由 VectorIndexConfig 配置。
+ * 3. 实现了混合检索 (Hybrid Search)，向量召回与关键词召回并行执行后按排名融合。
  */
 @Service
 public class IndexService {
 
-    private static final String INDEX_PATH = "lucene_index";
+    private static final Logger log = LoggerFactory.getLogger(IndexService.class);
+
+    // doc_type 字段取值：父分块文档只存储一次上下文，子分块文档承载向量与细粒度文本
+    private static final String DOC_TYPE_PARENT = "parent";
+    private static final String DOC_TYPE_CHILD = "child";
+    // 每个文件一条登记文档，记录文件级内容哈希，用于判断重新上传的文件是否发生变化
+    private static final String DOC_TYPE_FILE = "file";
+
+    // 文件名的精确键（不分词），同一文件的登记、父、子文档共享，作为整文件替换与删除的依据
+    private static final String FILENAME_KEY = "filename_key";
+    private static final String CONTENT_HASH = "content_hash";
+    private static final String VECTOR_FIELD = "vector";
+
+    // 文档目录字段：只写在文件登记文档上的 doc values，列出文件时无需遍历分块或加载存储字段
+    private static final String CATALOG_FILENAME = "catalog_filename";
+    private static final String CATALOG_CHUNK_COUNT = "catalog_chunk_count";
+    private static final String CATALOG_SOURCE_TYPE = "catalog_source_type";
+    private static final String CATALOG_INGESTED_AT = "catalog_ingested_at";
+
+    // 子文档自身存储的字段，只请求这些字段时检索无需回查父文档
+    private static final Set<String> CHILD_FIELDS = Set.of("filename", "parent_id", "child_content", "chunk_id");
     private final Analyzer analyzer = new StandardAnalyzer();
+
+    // N-gram 子串影子字段：只建倒排（不存储、不记词频位置），由 SubstringNGramAnalyzer 切分
+    private static final String CONTENT_NGRAM = "content" + SubstringNGramAnalyzer.FIELD_SUFFIX;
+    private static final String FILENAME_NGRAM = "filename" + SubstringNGramAnalyzer.FIELD_SUFFIX;
+    private static final FieldType NGRAM_FIELD_TYPE = new FieldType();
+    static {
+        NGRAM_FIELD_TYPE.setTokenized(true);
+        NGRAM_FIELD_TYPE.setIndexOptions(IndexOptions.DOCS);
+        NGRAM_FIELD_TYPE.setOmitNorms(true);
+        NGRAM_FIELD_TYPE.freeze();
+    }
+
+    // 父/子切片的最大字符数与重叠字符数
+    private static final TextChunker PARENT_CHUNKER = new TextChunker(800, 100);
+    private static final TextChunker CHILD_CHUNKER = new TextChunker(300, 50);
     
-    // 使用 JNI 向量生成 (bmad_native.cpp) 的维数为 384
-    private static final int VECTOR_DIM = 384; 
     
+    /**
+     * 索引目录。
+     */
+    @Value("${bmad.index.path:lucene_index}")
+    private String indexPath = "lucene_index";
+
+    /**
+     * 本索引所属的集合名。Spring 注入的实例为默认集合，其余集合由 CollectionService 通过 openCollection 创建。
+     */
+    private String collection = CollectionService.DEFAULT_COLLECTION;
+
+    /**
+     * 检索结果缓存的最大条目数，0 表示关闭缓存。
+     */
+    @Value("${bmad.search.cache.max-entries:1000}")
+    private int queryCacheEntries = 1000;
+
     @Value("${bmad.search.min-score:0.6}")
     private float minScoreAbsolute;
 
+    /**
+     * NRT 搜索器允许的最大陈旧时间（秒）。
+     * 后台刷新线程至少以该周期重新打开搜索器，保证写入在此时间内对检索可见。
+     */
+    @Value("${bmad.index.refresh.max-stale-sec:1.0}")
+    private double maxStaleSec;
+
+    /**
+     * 存在等待者时的最小刷新间隔（秒），用于限制高并发写入下的刷新频率。
+     */
+    @Value("${bmad.index.refresh.min-stale-sec:0.1}")
+    private double minStaleSec;
+
+    /**
+     * 组提交的最大等待时间（毫秒）：第一条未提交写入之后最多等待该时间即触发一次 Lucene 提交。
+     */
+    @Value("${bmad.index.commit.max-delay-ms:1000}")
+    private long maxCommitDelayMs;
+
+    /**
+     * 组提交的文档数阈值：未提交文档累计达到该数量时立即提交，不再等待。
+     */
+    @Value("${bmad.index.commit.max-pending-docs:5000}")
+    private int maxPendingDocs;
+
+    @Value("${bmad.index.wal.enabled:true}")
+    private boolean walEnabled;
+
+    @Value("${bmad.index.wal.path:index_wal}")
+    private String walPath;
+
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private ImageBlobStore imageBlobStore;
+
+    @Autowired
+    private RankFusion rankFusion;
+
+    @Autowired
+    private FusionConfig fusionConfig;
+
+    @Autowired
+    private VectorIndexConfig vectorIndexConfig;
+
+    // 脱离 Spring 容器构建时（测试、基准）使用不上报的默认实例
+    @Autowired
+    private PipelineMetrics metrics = PipelineMetrics.noop();
+
+    // 索引中 vector 字段的维数，0 表示索引中尚无向量；用于在写入与查询前给出明确的维数不一致错误
+    private volatile int indexedVectorDim;
+    private volatile boolean dimensionMismatchLogged;
+
+    // 混合检索中与关键词召回并行执行向量召回的线程池
+    private ExecutorService searchExecutor;
+
     private Directory directory;
     private IndexWriter writer;
 
+    // 基于 IndexWriter 的近实时 (NRT) 搜索器，所有查询共享并通过 acquire/release 引用计数
+    private SearcherManager searcherManager;
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+    // 首个尚未对检索可见的写入时间 (nanoTime)，0 表示没有待刷新的写入；用于统计刷新滞后
+    private final AtomicLong unrefreshedSince = new AtomicLong();
+    // 索引代数：NRT 搜索器每次刷新出新内容后递增，检索结果缓存以此判断条目是否过期
+    private final AtomicLong searcherGeneration = new AtomicLong();
+    private QueryResultCache queryCache;
+
+    // 按 IndexReader 版本缓存的文档目录
+    private volatile CatalogSnapshot catalogSnapshot;
+
+    // 文档目录快照：生成时的 IndexReader 版本与不可变的目录列表
+    private record CatalogSnapshot(long version, List<DocumentCatalogEntry> entries) {
+    }
+
+    // 写前日志：写入操作与 IndexWriter 调用在 walLock 下成对执行，保证日志段滚动时已写入的操作都在 writer 中
+    private IndexWal wal;
+    private final Object walLock = new Object();
+
+    // 组提交状态：等待持久化的请求、累计未提交文档数与已排期的提交任务，均由 commitLock 保护
+    private ScheduledExecutorService commitExecutor;
+    private final Object commitLock = new Object();
+    private final List<CompletableFuture<Void>> durableWaiters = new ArrayList<>();
+    private long pendingDocs;
+    private ScheduledFuture<?> scheduledCommit;
+
     @PostConstruct
     public void init() throws IOException {
-        directory = FSDirectory.open(Paths.get(INDEX_PATH));
-        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        directory = FSDirectory.open(Paths.get(indexPath));
+        Analyzer ngramAnalyzer = new SubstringNGramAnalyzer();
+        Analyzer indexAnalyzer = new PerFieldAnalyzerWrapper(analyzer,
+                Map.of(CONTENT_NGRAM, ngramAnalyzer, FILENAME_NGRAM, ngramAnalyzer));
+        IndexWriterConfig config = new IndexWriterConfig(indexAnalyzer);
+        // vector 字段按配置选择 HNSW 编码格式（float32 或 int8 标量量化）与图参数，其余字段沿用默认编码
+        KnnVectorsFormat vectorsFormat = vectorIndexConfig.buildFormat();
+        config.setCodec(new Lucene99Codec() {
+            @Override
+            public KnnVectorsFormat getKnnVectorsFormatForField(String field) {
+                return VECTOR_FIELD.equals(field) ? vectorsFormat : super.getKnnVectorsFormatForField(field);
+            }
+        });
         // Lucene 9.x 会自动管理 Write Lock，如果索引库被异常锁定，IndexWriter 构造时会抛出 LockObtainFailedException
         writer = new IndexWriter(directory, config);
-        System.out.println("[IndexService] 索引服务初始化完成。");
+
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-group-commit");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // 直接从 writer 打开 NRT 搜索器，无需等待 commit 即可看到新写入的文档
+        if (queryCacheEntries > 0) {
+            queryCache = new QueryResultCache(queryCacheEntries);
+            metrics.registerQueryCache(queryCache, collection);
+        }
+        searcherManager = new SearcherManager(writer, null);
+        searcherManager.addListener(new ReferenceManager.RefreshListener() {
+            private long refreshing;
+
+            @Override
+            public void beforeRefresh() {
+                refreshing = unrefreshedSince.getAndSet(0);
+            }
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (refreshing != 0) {
+                    metrics.recordRefreshLag(System.nanoTime() - refreshing);
+                }
+                if (didRefresh) {
+                    searcherGeneration.incrementAndGet();
+                    if (queryCache != null) {
+                        queryCache.clear();
+                    }
+                }
+            }
+        });
+        reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager, maxStaleSec, minStaleSec);
+        reopenThread.setName("lucene-nrt-reopen");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+
+        // 重放依赖 NRT 搜索器完成提交后的刷新，因此在其之后进行
+        if (walEnabled) {
+            wal = new IndexWal(Paths.get(walPath), NGRAM_FIELD_TYPE);
+            replayWal();
+        }
+        checkVectorDimension();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        searchExecutor = Executors.newFixedThreadPool(Math.max(1, fusionConfig.getLegThreads()), r -> {
+            Thread t = new Thread(r, "search-leg-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("索引服务初始化完成: {} ({})", collection, indexPath);
+    }
+
+    /**
+     * 打开一个与本实例配置、协作组件相同，但使用独立索引目录、写入器与写前日志的集合索引。
+     * 图片存储按内容寻址，各集合共享同一份。
+     *
+     * @param name 集合名
+     * @param indexDir 集合的索引目录
+     * @param walDir 集合的写前日志目录
+     * @return 已初始化的集合索引，关闭时调用 cleanup
+     */
+    IndexService openCollection(String name, Path indexDir, Path walDir) throws IOException {
+        IndexService sibling = new IndexService();
+        sibling.collection = name;
+        sibling.indexPath = indexDir.toString();
+        sibling.walPath = walDir.toString();
+        sibling.walEnabled = walEnabled;
+        sibling.queryCacheEntries = queryCacheEntries;
+        sibling.minScoreAbsolute = minScoreAbsolute;
+        sibling.maxStaleSec = maxStaleSec;
+        sibling.minStaleSec = minStaleSec;
+        sibling.maxCommitDelayMs = maxCommitDelayMs;
+        sibling.maxPendingDocs = maxPendingDocs;
+        sibling.embeddingService = embeddingService;
+        sibling.imageBlobStore = imageBlobStore;
+        sibling.rankFusion = rankFusion;
+        sibling.fusionConfig = fusionConfig;
+        sibling.vectorIndexConfig = vectorIndexConfig;
+        sibling.metrics = metrics;
+        sibling.init();
+        return sibling;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * 读取索引中 vector 字段的维数。
+     * 此处不触发原生库加载；与模型输出维数的比对在写入向量与查询时进行（见 embedDocuments / search）。
+     */
+    private void checkVectorDimension() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            FieldInfo fieldInfo = FieldInfos.getMergedFieldInfos(searcher.getIndexReader()).fieldInfo(VECTOR_FIELD);
+            indexedVectorDim = fieldInfo != null ? fieldInfo.getVectorDimension() : 0;
+        } finally {
+            searcherManager.release(searcher);
+        }
+        log.info("向量编码: {} (M={}, beamWidth={}), 索引向量维数: {}", vectorIndexConfig.getQuantization(),
+                vectorIndexConfig.getM(), vectorIndexConfig.getBeamWidth(), indexedVectorDim);
     }
 
     @PreDestroy
     public void cleanup() throws IOException {
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+        if (commitExecutor != null) {
+            // 尚在延迟中的组提交由下面的最终提交代替；正在执行的提交不中断，等待其完成
+            synchronized (commitLock) {
+                if (scheduledCommit != null) {
+                    scheduledCommit.cancel(false);
+                }
+                commitExecutor.shutdown();
+            }
+            try {
+                if (!commitExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("等待组提交完成超时");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 关闭前把尚未提交的写入提交掉，并清理已无用的日志段
+            commitNow();
+        }
+        if (wal != null) {
+            wal.close();
+        }
+        if (reopenThread != null) {
+            reopenThread.close();
+        }
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
         if (writer != null) {
             writer.close();
         }
@@ -72,120 +385,569 @@ public class IndexService {
     }
 
     /**
-     * 为文档建立索引。
+     * 为文档建立索引（按文件名 upsert）。
      * 支持 Parent-Child Indexing 和 元数据存储。
+     * 内容哈希与已索引版本一致时直接跳过；否则以新分块整体替换该文件的旧分块。
+     * 
+     * @param filename 文件名
+     * @param contentHash 文件级内容哈希
+     * @param segments 解析得到的文档片段
+     * @return 是否写入了索引（内容未变化时返回 false）
      */
-    public void indexDocument(String filename, List<DocumentSegment> segments) throws IOException {
-        System.out.println("[IndexService] 正在为文件建立索引: " + filename + " (分段数: " + segments.size() + ")");
-        
-        int totalChildCount = 0;
-        Set<String> reservedFields = new HashSet<>(Arrays.asList("filename", "parent_id", "content", "child_content", "chunk_id", "vector", "image_data", "anchor", "has_image"));
+    public boolean indexDocument(String filename, String contentHash, List<DocumentSegment> segments) throws IOException {
+        if (contentHash.equals(getIndexedContentHash(filename))) {
+            log.debug("文件内容未变化，跳过索引: {}", filename);
+            return false;
+        }
+        log.debug("正在为文件建立索引: {} (分段数: {})", filename, segments.size());
+
+        List<Document> docs = buildChunkDocuments(filename, segments);
+
+        // 子分块按批通过一次 JNI 调用统一生成向量，再整体替换写入索引
+        int batchSize = Math.max(1, embeddingService.getBatchSize());
+        for (int start = 0; start < docs.size(); start += batchSize) {
+            embedDocuments(docs.subList(start, Math.min(start + batchSize, docs.size())));
+        }
+        replaceDocuments(filename, contentHash, docs);
+        commit();
+        log.debug("索引提交成功，共写入文档数 (父+子): {}", docs.size());
+        return true;
+    }
+
+    /**
+     * 分块阶段：将解析后的片段切分为父/子分块，并构建待写入的 Lucene 文档（尚不含向量字段）。
+     * 每个父分块生成一个父文档（存储全文与元数据），其后紧跟若干子文档（用于向量与关键词召回）。
+     * 
+     * @param filename 文件名
+     * @param segments 解析得到的文档片段
+     * @return 父文档与子文档，按父在前、子在后的顺序排列
+     */
+    public List<Document> buildChunkDocuments(String filename, List<DocumentSegment> segments) throws IOException {
+        List<Document> docs = new ArrayList<>();
+        int parentCount = 0;
+        Set<String> reservedFields = new HashSet<>(Arrays.asList("doc_type", "filename", FILENAME_KEY, CONTENT_HASH, "parent_id", "content", CONTENT_NGRAM, FILENAME_NGRAM, "child_content", "chunk_id", "vector", "image_id", "anchor", "has_image"));
         
         for (int segIdx = 0; segIdx < segments.size(); segIdx++) {
             DocumentSegment segment = segments.get(segIdx);
             String content = segment.getContent();
             Map<String, Object> metadata = segment.getMetadata();
-            String imageData = segment.getImageData();
-            boolean hasImage = imageData != null && !imageData.isEmpty();
+            byte[] imageData = segment.getImageData();
+            boolean hasImage = imageData != null && imageData.length > 0;
+            // 图片按内容哈希写入 blob 存储，每个片段只写一次，子分块仅引用其 ID
+            String imageId = hasImage ? imageBlobStore.put(imageData) : null;
             
             // 1. 父级切片 (Parent Chunks): 较大粒度，作为返回给 LLM 的上下文 (e.g. 800-1000 chars)
-            List<String> parentChunks = adaptiveChunking(content, 800, 100);
-            
-            for (int pIdx = 0; pIdx < parentChunks.size(); pIdx++) {
-                String parentChunk = parentChunks.get(pIdx);
+            // 分块器惰性产出偏移区间，只有真正写入文档的父/子切片才复制为字符串
+            int pIdx = 0;
+            for (TextChunker.Chunk parent : PARENT_CHUNKER.chunks(content)) {
+                String parentChunk = parent.toString();
                 // Unique ID for Parent Chunk: filename + segment + parent_idx
                 String parentId = filename + "#s" + segIdx + "p" + pIdx; 
+
+                // 父文档：父级切片全文、图片与元数据只在这里存储一次，子文档通过 parent_id 引用
+                Document parentDoc = new Document();
+                parentDoc.add(new StringField("doc_type", DOC_TYPE_PARENT, Field.Store.YES));
+                parentDoc.add(new TextField("filename", filename, Field.Store.YES));
+                parentDoc.add(new StringField(FILENAME_KEY, filename, Field.Store.NO));
+                parentDoc.add(new StringField("parent_id", parentId, Field.Store.YES));
+                parentDoc.add(new TextField("content", parentChunk, Field.Store.YES)); // Parent Chunk Text (Stored, Indexed)
+                // 子串检索影子字段：父分块已覆盖其全部子分块文本，因此只在父文档上建立
+                parentDoc.add(new Field(CONTENT_NGRAM, parentChunk, NGRAM_FIELD_TYPE));
+                parentDoc.add(new Field(FILENAME_NGRAM, filename, NGRAM_FIELD_TYPE));
                 
-                // 2. 子级切片 (Child Chunks): 较小粒度，用于生成向量索引 (e.g. 200-300 chars)
-                List<String> childChunks = adaptiveChunking(parentChunk, 300, 50);
+                // 存储图片标志位，用于意图识别增强
+                parentDoc.add(new StringField("has_image", hasImage ? "true" : "false", Field.Store.YES));
+                
+                // 存储图片 ID (如果有)，图片字节通过 /api/images/{id} 按需读取
+                if (hasImage) {
+                    parentDoc.add(new StoredField("image_id", imageId));
+                }
                 
-                for (int cIdx = 0; cIdx < childChunks.size(); cIdx++) {
-                    String childChunk = childChunks.get(cIdx);
+                // 存储元数据
+                if (metadata != null) {
+                    for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                        String key = entry.getKey();
+                        if (reservedFields.contains(key)) continue; // Skip reserved fields to avoid type conflict
+                        Object value = entry.getValue();
+                        if (value != null) {
+                            parentDoc.add(new StringField(key, value.toString(), Field.Store.YES));
+                        }
+                    }
+                    String anchor = buildAnchor(metadata);
+                    if (anchor != null) {
+                        parentDoc.add(new StringField("anchor", anchor, Field.Store.YES));
+                    }
+                }
+                docs.add(parentDoc);
+                
+                // 2. 子级切片 (Child Chunks): 较小粒度，用于生成向量索引 (e.g. 200-300 chars)
+                int cIdx = 0;
+                for (TextChunker.Chunk child : CHILD_CHUNKER.chunks(parentChunk)) {
+                    String childChunk = child.toString();
                     
                     Document doc = new Document();
                     
-                    // 存储字段
+                    // 子文档只保存自身文本与父级引用
+                    doc.add(new StringField("doc_type", DOC_TYPE_CHILD, Field.Store.YES));
                     doc.add(new TextField("filename", filename, Field.Store.YES)); // Change to TextField for keyword search
+                    doc.add(new StringField(FILENAME_KEY, filename, Field.Store.NO));
                     doc.add(new StringField("parent_id", parentId, Field.Store.YES));
-                    doc.add(new TextField("content", parentChunk, Field.Store.YES)); // Parent Chunk Text (Stored)
                     doc.add(new TextField("child_content", childChunk, Field.Store.YES)); // Child Chunk Text (Stored, Indexed)
                     doc.add(new IntField("chunk_id", cIdx, Field.Store.YES));
+                    doc.add(new StringField("has_image", hasImage ? "true" : "false", Field.Store.NO));
                     
-                    // 存储图片标志位，用于意图识别增强
-                    doc.add(new StringField("has_image", hasImage ? "true" : "false", Field.Store.YES));
-                    
-                    // 存储图片数据 (如果有)
-                    if (hasImage) {
-                        doc.add(new StoredField("image_data", imageData));
-                    }
-                    
-                    // 存储元数据
-                    if (metadata != null) {
-                        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-                            String key = entry.getKey();
-                            if (reservedFields.contains(key)) continue; // Skip reserved fields to avoid type conflict
-                            Object value = entry.getValue();
-                            if (value != null) {
-                                doc.add(new StringField(key, value.toString(), Field.Store.YES));
-                            }
-                        }
-                        String anchor = buildAnchor(metadata);
-                        if (anchor != null) {
-                            doc.add(new StringField("anchor", anchor, Field.Store.YES));
-                        }
-                    }
-                    
-                    // 向量字段 (基于 Child Chunk)
-                    float[] vector = embeddingService.getEmbedding(childChunk);
-                    if (vector != null) {
-                        doc.add(new KnnVectorField("vector", vector, VectorSimilarityFunction.COSINE));
+                    docs.add(doc);
+                    cIdx++;
+                }
+                pIdx++;
+                parentCount++;
+            }
+        }
+        metrics.recordChunks(parentCount, docs.size() - parentCount);
+        return docs;
+    }
+
+    /**
+     * 向量化阶段：为一批子分块文档批量生成向量并补齐 vector 字段。
+     * 
+     * @param docs 由 {@link #buildChunkDocuments} 构建的文档（父文档会被跳过）
+     */
+    public void embedDocuments(List<Document> docs) {
+        if (docs.isEmpty()) {
+            return;
+        }
+        // 只有子文档携带向量，父文档仅用于存储上下文
+        List<Document> children = new ArrayList<>(docs.size());
+        List<String> texts = new ArrayList<>(docs.size());
+        for (Document doc : docs) {
+            String childContent = doc.get("child_content");
+            if (childContent != null) {
+                children.add(doc);
+                texts.add(childContent);
+            }
+        }
+        if (children.isEmpty()) {
+            return;
+        }
+        List<float[]> vectors = embeddingService.embedBatch(texts);
+        for (int i = 0; i < children.size(); i++) {
+            float[] vector = vectors.get(i);
+            if (vector != null) {
+                int expected = indexedVectorDim;
+                if (expected > 0 && vector.length != expected) {
+                    throw new IllegalStateException("向量维数 " + vector.length + " 与索引中 vector 字段的维数 " + expected
+                            + " 不一致（可能更换了模型），请清空索引后重新入库");
+                }
+                children.get(i).add(new KnnFloatVectorField(VECTOR_FIELD, vector, VectorSimilarityFunction.COSINE));
+            }
+        }
+    }
+
+    /**
+     * 以新文档整体替换某个文件已索引的全部文档。
+     * 删除旧文档与写入新文档在 IndexWriter 中是同一个原子操作，检索不会看到新旧分块混杂或文件缺失的中间状态。
+     * 
+     * @param filename 文件名
+     * @param contentHash 文件级内容哈希，写入登记文档供下次上传比对
+     * @param docs 已完成向量化的父/子文档
+     */
+    public void replaceDocuments(String filename, String contentHash, List<Document> docs) throws IOException {
+        Document fileDoc = new Document();
+        fileDoc.add(new StringField("doc_type", DOC_TYPE_FILE, Field.Store.YES));
+        // 登记文档不写 filename 检索字段，避免被关键词召回命中
+        fileDoc.add(new StringField(FILENAME_KEY, filename, Field.Store.YES));
+        fileDoc.add(new StoredField(CONTENT_HASH, contentHash));
+        fileDoc.add(new SortedDocValuesField(CATALOG_FILENAME, new BytesRef(filename)));
+        fileDoc.add(new NumericDocValuesField(CATALOG_CHUNK_COUNT, countChildren(docs)));
+        fileDoc.add(new SortedDocValuesField(CATALOG_SOURCE_TYPE, new BytesRef(sourceType(filename, docs))));
+        fileDoc.add(new NumericDocValuesField(CATALOG_INGESTED_AT, System.currentTimeMillis()));
+
+        List<Document> block = new ArrayList<>(docs.size() + 1);
+        block.add(fileDoc);
+        block.addAll(docs);
+        synchronized (walLock) {
+            if (wal != null) {
+                wal.append(IndexWal.Op.REPLACE, filename, block);
+            }
+            writer.updateDocuments(new Term(FILENAME_KEY, filename), block);
+        }
+        noteVectorDimension(docs);
+        notePendingDocs(block.size());
+    }
+
+    /**
+     * 查询文件已索引版本的内容哈希。
+     * 
+     * @param filename 文件名
+     * @return 内容哈希，文件未索引（或由旧版本写入、没有登记文档）时返回 null
+     */
+    public String getIndexedContentHash(String filename) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs hits = searcher.search(fileQuery(filename), 1);
+            if (hits.scoreDocs.length == 0) {
+                return null;
+            }
+            return searcher.storedFields().document(hits.scoreDocs[0].doc, Set.of(CONTENT_HASH)).get(CONTENT_HASH);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 删除单个文件的全部文档（登记、父、子）并提交。
+     * 
+     * @param filename 文件名
+     * @return 文件此前是否存在于索引中
+     */
+    public boolean deleteDocument(String filename) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        boolean exists;
+        try {
+            exists = searcher.count(new TermQuery(new Term(FILENAME_KEY, filename))) > 0;
+        } finally {
+            searcherManager.release(searcher);
+        }
+        if (!exists) {
+            return false;
+        }
+        synchronized (walLock) {
+            if (wal != null) {
+                wal.append(IndexWal.Op.DELETE, filename, null);
+            }
+            writer.deleteDocuments(new Term(FILENAME_KEY, filename));
+        }
+        notePendingDocs(1);
+        commit();
+        log.info("已删除文件索引: {}", filename);
+        return true;
+    }
+
+    private void noteVectorDimension(List<Document> docs) {
+        if (indexedVectorDim > 0) {
+            return;
+        }
+        for (Document doc : docs) {
+            if (doc.getField(VECTOR_FIELD) instanceof KnnFloatVectorField vectorField) {
+                indexedVectorDim = vectorField.vectorValue().length;
+                return;
+            }
+        }
+    }
+
+    private static int countChildren(List<Document> docs) {
+        int count = 0;
+        for (Document doc : docs) {
+            if (DOC_TYPE_CHILD.equals(doc.get("doc_type"))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 文件来源类型：取首个父文档的 source_type 元数据，缺失时退回扩展名。
+     */
+    private static String sourceType(String filename, List<Document> docs) {
+        for (Document doc : docs) {
+            if (DOC_TYPE_PARENT.equals(doc.get("doc_type")) && doc.get("source_type") != null) {
+                return doc.get("source_type");
+            }
+        }
+        return filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Query fileQuery(String filename) {
+        return new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FILENAME_KEY, filename)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term("doc_type", DOC_TYPE_FILE)), BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    /**
+     * 按持久化级别完成此前的写入：与其他请求合并为一次组提交，并刷新 NRT 搜索器。
+     * 
+     * @param durability 持久化级别
+     * @return 达到该级别时完成的 Future；DURABLE 级别在包含本次写入的 Lucene 提交完成后才完成
+     */
+    public CompletableFuture<Void> commit(Durability durability) {
+        switch (durability) {
+            case ASYNC -> {
+                scheduleCommit(false);
+                return CompletableFuture.completedFuture(null);
+            }
+            case VISIBLE -> {
+                try {
+                    if (wal != null) {
+                        wal.sync();
                     }
-                    
-                    writer.addDocument(doc);
-                    totalChildCount++;
+                    searcherManager.maybeRefreshBlocking();
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                scheduleCommit(false);
+                return CompletableFuture.completedFuture(null);
+            }
+            default -> {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                synchronized (commitLock) {
+                    durableWaiters.add(future);
+                }
+                scheduleCommit(false);
+                return future;
+            }
+        }
+    }
+
+    /**
+     * 等待此前的写入被持久化提交，并刷新 NRT 搜索器。
+     */
+    public void commit() throws IOException {
+        try {
+            commit(Durability.DURABLE).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private void notePendingDocs(int count) {
+        unrefreshedSince.compareAndSet(0, System.nanoTime());
+        boolean full;
+        synchronized (commitLock) {
+            pendingDocs += count;
+            full = pendingDocs >= maxPendingDocs;
+        }
+        scheduleCommit(full);
+    }
+
+    /**
+     * 排期一次组提交：达到文档数阈值时立即执行，否则在最大等待时间后执行；已排期时不重复排期。
+     */
+    private void scheduleCommit(boolean immediate) {
+        synchronized (commitLock) {
+            if (scheduledCommit != null && !scheduledCommit.isDone()) {
+                if (!immediate || scheduledCommit.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                    return;
+                }
+                scheduledCommit.cancel(false);
+            }
+            if (commitExecutor.isShutdown()) {
+                return;
+            }
+            scheduledCommit = commitExecutor.schedule(this::commitNow, immediate ? 0 : maxCommitDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 执行一次组提交：滚动写前日志段，提交 IndexWriter，成功后删除已持久化的日志段并唤醒等待者。
+     */
+    private void commitNow() {
+        List<CompletableFuture<Void>> waiters;
+        synchronized (commitLock) {
+            waiters = new ArrayList<>(durableWaiters);
+            durableWaiters.clear();
+            pendingDocs = 0;
+            scheduledCommit = null;
+        }
+        long start = System.nanoTime();
+        try {
+            long sealed = -1;
+            synchronized (walLock) {
+                if (wal != null) {
+                    sealed = wal.roll();
                 }
             }
+            writer.commit();
+            if (wal != null) {
+                wal.truncate(sealed);
+            }
+            refreshSearcher();
+            metrics.recordCommit(System.nanoTime() - start, true);
+            waiters.forEach(w -> w.complete(null));
+        } catch (IOException | RuntimeException e) {
+            metrics.recordCommit(System.nanoTime() - start, false);
+            log.error("组提交失败", e);
+            waiters.forEach(w -> w.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 启动时重放上次未提交的写前日志。日志只包含按文件名替换、删除与清空，均为幂等操作，
+     * 重复执行已提交的部分不会产生重复文档。
+     */
+    private void replayWal() throws IOException {
+        List<IndexWal.Entry> entries = wal.readAll();
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (IndexWal.Entry entry : entries) {
+            switch (entry.op()) {
+                case REPLACE -> writer.updateDocuments(new Term(FILENAME_KEY, entry.key()), entry.docs());
+                case DELETE -> writer.deleteDocuments(new Term(FILENAME_KEY, entry.key()));
+                case CLEAR -> writer.deleteAll();
+            }
         }
-        writer.commit();
-        System.out.println("[IndexService] 索引提交成功，共写入子分块数: " + totalChildCount);
+        commitNow();
+        log.info("已从写前日志恢复未提交的操作: {} 条", entries.size());
     }
 
     /**
-     * 获取所有已索引的文档列表。
+     * 入库后的刷新钩子：立即尝试重新打开 NRT 搜索器，
+     * 使刚写入的文档无需等待后台刷新周期即可被检索到。
+     */
+    public void refreshSearcher() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * 预读索引文件：顺序读取索引目录中的全部文件，把它们载入操作系统页缓存，
+     * 避免部署后最初的检索承担冷页面缺页的开销。读取期间持有当前搜索器，其引用的文件不会被合并删除。
      * 
-     * @return 唯一的文件名列表。
-     */
-    public List<String> getAllIndexedDocuments() throws IOException {
-        Set<String> filenames = new HashSet<>();
-        try (DirectoryReader reader = DirectoryReader.open(directory)) {
-            // 这里使用 MatchAllDocsQuery 检索所有文档
-            IndexSearcher searcher = new IndexSearcher(reader);
-            Query query = new MatchAllDocsQuery();
-            
-            // 我们只需要 filename 字段，所以使用特定的字段加载器（如果需要更高效的话）
-            // 但这里直接获取 TopDocs 并遍历
-            TopDocs docs = searcher.search(query, Integer.MAX_VALUE);
-            for (ScoreDoc scoreDoc : docs.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc, Set.of("filename"));
-                String filename = doc.get("filename");
-                if (filename != null) {
-                    filenames.add(filename);
+     * @return 读取的字节数
+     */
+    public long prefetchIndexFiles() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            for (String name : directory.listAll()) {
+                if (name.equals(IndexWriter.WRITE_LOCK_NAME)) {
+                    continue;
+                }
+                try (IndexInput input = directory.openInput(name, IOContext.READONCE)) {
+                    long remaining = input.length();
+                    while (remaining > 0) {
+                        int n = (int) Math.min(buffer.length, remaining);
+                        input.readBytes(buffer, 0, n);
+                        remaining -= n;
+                    }
+                    total += input.length();
+                } catch (NoSuchFileException | FileNotFoundException e) {
+                    // 不被当前搜索器引用的旧文件可能已被合并删除
                 }
             }
-        } catch (IndexNotFoundException e) {
-            // 索引不存在时返回空列表
-            return new ArrayList<>();
+            return total;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 获取文档目录（每个已索引文件一条，按文件名排序）。
+     * 只遍历文件登记文档并读取其 doc values，开销与文件数成正比而非分块总数；
+     * 结果按 IndexReader 版本缓存，提交或 NRT 刷新产生新版本后自动失效。
+     * 
+     * @return 不可变的目录列表
+     */
+    public List<DocumentCatalogEntry> getCatalog() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            long version = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+            CatalogSnapshot snapshot = catalogSnapshot;
+            if (snapshot != null && snapshot.version() == version) {
+                return snapshot.entries();
+            }
+            List<DocumentCatalogEntry> entries = new ArrayList<>();
+            searcher.search(new TermQuery(new Term("doc_type", DOC_TYPE_FILE)), new SimpleCollector() {
+                private SortedDocValues filenames;
+                private NumericDocValues chunkCounts;
+                private SortedDocValues sourceTypes;
+                private NumericDocValues ingestedAts;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    filenames = DocValues.getSorted(context.reader(), CATALOG_FILENAME);
+                    chunkCounts = DocValues.getNumeric(context.reader(), CATALOG_CHUNK_COUNT);
+                    sourceTypes = DocValues.getSorted(context.reader(), CATALOG_SOURCE_TYPE);
+                    ingestedAts = DocValues.getNumeric(context.reader(), CATALOG_INGESTED_AT);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    if (!filenames.advanceExact(doc)) {
+                        return;
+                    }
+                    String filename = filenames.lookupOrd(filenames.ordValue()).utf8ToString();
+                    int chunkCount = chunkCounts.advanceExact(doc) ? (int) chunkCounts.longValue() : 0;
+                    String sourceType = sourceTypes.advanceExact(doc)
+                            ? sourceTypes.lookupOrd(sourceTypes.ordValue()).utf8ToString() : null;
+                    long ingestedAt = ingestedAts.advanceExact(doc) ? ingestedAts.longValue() : 0L;
+                    entries.add(new DocumentCatalogEntry(filename, chunkCount, sourceType, ingestedAt));
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            });
+            entries.sort(Comparator.comparing(DocumentCatalogEntry::getFilename));
+            List<DocumentCatalogEntry> result = Collections.unmodifiableList(entries);
+            catalogSnapshot = new CatalogSnapshot(version, result);
+            return result;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 收集索引中引用的全部图片 ID，供 ImageBlobSweeper 清理未被引用的图片。
+     * 收集前先阻塞刷新搜索器，已写入但尚未刷新的文档也会计入。
+     *
+     * @param into 收集结果
+     */
+    public void collectImageIds(Set<String> into) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            // 子文档复制了父文档的 has_image 字段，只扫描父文档即可覆盖全部图片引用
+            Query query = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("has_image", "true")), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(new Term("doc_type", DOC_TYPE_PARENT)), BooleanClause.Occur.FILTER)
+                    .build();
+            searcher.search(query, new SimpleCollector() {
+                private StoredFields storedFields;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    storedFields = context.reader().storedFields();
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    String imageId = storedFields.document(doc, Set.of("image_id")).get("image_id");
+                    if (imageId != null) {
+                        into.add(imageId);
+                    }
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            });
+        } finally {
+            searcherManager.release(searcher);
         }
-        return new ArrayList<>(filenames);
     }
 
     /**
      * 清空所有索引数据。
      */
     public void deleteAll() throws IOException {
-        writer.deleteAll();
-        writer.commit();
-        System.out.println("[IndexService] 索引已清空。");
+        synchronized (walLock) {
+            if (wal != null) {
+                wal.append(IndexWal.Op.CLEAR, null, null);
+            }
+            writer.deleteAll();
+            // deleteAll 会重置字段结构，之后可以写入任意维数的向量
+            indexedVectorDim = 0;
+        }
+        notePendingDocs(1);
+        commit();
+        log.info("索引已清空。");
     }
 
     private String buildAnchor(Map<String, Object> metadata) {
@@ -212,186 +974,389 @@ public class IndexService {
     }
 
     /**
-     * 自适应分块算法。
-     * 1. 优先按段落分割。
-     * 2. 段落过长则按句子分割。
-     * 3. 保证最大长度限制并包含重叠。
+     * 混合检索 (Hybrid Search)，返回全部存储字段。
+     * 
+     * @param queryString 用户查询
+     * @return 包含文档内容、文件名和相关度得分的结果列表
      */
-    private List<String> adaptiveChunking(String text, int maxChars, int overlap) {
-        List<String> result = new ArrayList<>();
-        if (text == null || text.isEmpty()) return result;
+    public SearchResponse search(String queryString) throws Exception {
+        return search(queryString, null);
+    }
 
-        // 1. 按段落分割
-        String[] paragraphs = text.split("\\n\\s*\\n");
-        
-        for (String para : paragraphs) {
-            para = para.trim();
-            if (para.isEmpty()) continue;
+    /**
+     * 混合检索 (Hybrid Search)
+     * 向量召回 (Semantic) 与关键词召回 (Lexical) 在同一个搜索器上并行执行，再由 RankFusion 融合排序。
+     * 
+     * @param queryString 用户查询
+     * @param returnFields 需要返回的存储字段，null 表示全部；只请求子文档字段时不会加载父文档
+     * @return 包含所请求字段、相关度得分与各路耗时的检索响应
+     */
+    public SearchResponse search(String queryString, Set<String> returnFields) throws Exception {
+        return search(queryString, returnFields, SearchMode.HYBRID);
+    }
 
-            if (para.length() <= maxChars) {
-                result.add(para);
-            } else {
-                // 2. 段落过长，按句子分割
-                List<String> sentences = splitIntoSentences(para);
-                StringBuilder currentChunk = new StringBuilder();
+    /**
+     * 按指定模式检索：HYBRID 两路并行后融合，VECTOR / KEYWORD 只执行单路召回，结果加载流程相同。
+     * 启用结果缓存时，索引未刷新期间的重复查询直接返回缓存结果，并发的相同查询只执行一次。
+     * 
+     * @param queryString 用户查询
+     * @param returnFields 需要返回的存储字段，null 表示全部
+     * @param mode 检索模式
+     */
+    public SearchResponse search(String queryString, Set<String> returnFields, SearchMode mode) throws Exception {
+        if (queryCache == null) {
+            return executeSearch(queryString, returnFields, mode);
+        }
+        // 先读取代数再检索：检索期间发生刷新时结果记在旧代数下，不会被新代数的请求命中
+        return queryCache.get(QueryResultCache.key(queryString, returnFields, mode), searcherGeneration.get(),
+                () -> executeSearch(queryString, returnFields, mode));
+    }
+
+    /**
+     * 执行检索但不读写结果缓存，供启动预热使用：预热查询每轮都需要真正执行，也不应占用缓存容量。
+     */
+    public SearchResponse searchUncached(String queryString, SearchMode mode) throws Exception {
+        return executeSearch(queryString, null, mode);
+    }
+
+    private SearchResponse executeSearch(String queryString, Set<String> returnFields, SearchMode mode) throws Exception {
+        log.debug("收到检索请求: {} ({})", queryString, mode);
+        SearchResponse response = new SearchResponse();
+        response.setFusionMode(mode == SearchMode.HYBRID ? fusionConfig.getMode() : mode.name().toLowerCase(Locale.ROOT));
+        long searchStart = System.nanoTime();
+
+        String normalizedQuery = queryString.trim();
+        boolean useKeywordMust = mode == SearchMode.HYBRID && normalizedQuery.length() <= 2 && !normalizedQuery.contains(" ");
+        Query keywordQuery = mode == SearchMode.VECTOR ? null : buildKeywordQuery(queryString);
+        if (useKeywordMust && keywordQuery == null) {
+            return response;
+        }
+
+        // 从共享的 NRT 搜索器中获取引用，查询结束后必须 release
+        IndexSearcher searcher = searcherManager.acquire();
+        // 向量召回任务与本线程竞争认领：任务先认领时，本线程释放搜索器前须等待其结束；
+        // 本线程先认领（关键词召回抛异常、等待被中断等提前退出）时，尚未开始的任务直接跳过
+        AtomicBoolean vectorClaimed = new AtomicBoolean();
+        CountDownLatch vectorDone = new CountDownLatch(1);
+        try {
+            int legTopK = fusionConfig.getLegTopK();
+
+            // 1. 向量召回 (Semantic Search)：查询向量化 + KNN，提交到检索线程池与关键词召回并行
+            Future<TopDocs> vectorFuture = mode == SearchMode.KEYWORD ? CompletableFuture.completedFuture(null) : searchExecutor.submit(() -> {
+                if (!vectorClaimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return vectorSearch(searcher, queryString, legTopK, response);
+                } finally {
+                    vectorDone.countDown();
+                }
+            });
+
+            // 2. 关键词召回 (BM25)：在当前线程执行
+            TopDocs keywordHits = null;
+            if (keywordQuery != null) {
+                long keywordStart = System.nanoTime();
+                keywordHits = searcher.search(keywordQuery, legTopK);
+                response.addTiming("keyword", System.nanoTime() - keywordStart);
+            }
+
+            TopDocs vectorHits;
+            try {
+                vectorHits = vectorFuture.get();
+            } catch (ExecutionException e) {
+                log.warn("向量召回失败: {}", e.getCause().getMessage());
+                vectorHits = null;
+            }
+
+            // 3. 融合两路排序：关键词召回命中父文档、向量召回命中子文档，按 parent_id 分组后
+            //    同一父分块的两路命中合并为一个候选并累加得分；短查询模式下父文档命中关键词即可保留其子文档的向量命中
+            long fusionStart = System.nanoTime();
+            StoredFields storedFields = searcher.storedFields();
+            Map<Integer, String> parentIds = new HashMap<>();
+            List<RankFusion.FusedHit> fused = rankFusion.fuse(vectorHits, keywordHits, useKeywordMust,
+                    doc -> parentIds.computeIfAbsent(doc, d -> readParentId(storedFields, d)));
+            response.addTiming("fusion", System.nanoTime() - fusionStart);
+            float maxRawScore = fused.isEmpty() ? 0.0f : fused.get(0).score();
+            log.debug("检索完成，向量命中: {}, 关键词命中: {}, 融合候选: {}", vectorHits != null ? vectorHits.scoreDocs.length : 0,
+                    keywordHits != null ? keywordHits.scoreDocs.length : 0, fused.size());
+            
+            // 4. 加载结果
+            long fetchStart = System.nanoTime();
+            List<SearchResult> results = new ArrayList<>();
+            boolean needParent = returnFields == null || !CHILD_FIELDS.containsAll(returnFields);
+            
+            for (RankFusion.FusedHit hit : fused) {
+                // 融合已按父分块分组，这里只读取 parent_id 与 doc_type 判断是否需要解析父文档
+                DocumentStoredFieldVisitor keyVisitor = new DocumentStoredFieldVisitor("parent_id", "doc_type");
+                storedFields.document(hit.doc(), keyVisitor);
+                Document keys = keyVisitor.getDocument();
+                String parentId = keys.get("parent_id");
+                
+                SearchResult item = new SearchResult(hit.score(), maxRawScore);
+                item.setCollection(collection);
+                item.setVectorScore(hit.vectorScore());
+                item.setKeywordScore(hit.keywordScore());
                 
-                for (String sentence : sentences) {
-                    if (currentChunk.length() + sentence.length() > maxChars && currentChunk.length() > 0) {
-                        result.add(currentChunk.toString().trim());
-                        // 保留部分重叠
-                        int overlapStart = Math.max(0, currentChunk.length() - overlap);
-                        String overlapText = currentChunk.substring(overlapStart);
-                        currentChunk = new StringBuilder(overlapText);
+                // 仅对最终命中解析父文档：父文档提供全文与元数据，子文档字段覆盖其上
+                if (needParent && parentId != null && !DOC_TYPE_PARENT.equals(keys.get("doc_type"))) {
+                    int parentDoc = findParent(searcher, parentId);
+                    if (parentDoc >= 0) {
+                        storedFields.document(parentDoc, new SearchResultFieldVisitor(returnFields, item));
                     }
-                    currentChunk.append(sentence).append(" ");
                 }
+                storedFields.document(hit.doc(), new SearchResultFieldVisitor(returnFields, item));
                 
-                if (currentChunk.length() > 0) {
-                    result.add(currentChunk.toString().trim());
-                }
+                results.add(item);
+            }
+            response.addTiming("fetch", System.nanoTime() - fetchStart);
+            response.addTiming("total", System.nanoTime() - searchStart);
+            response.setResults(results);
+            log.debug("返回结果数: {}", results.size());
+
+            Map<String, Integer> hits = new LinkedHashMap<>();
+            if (mode != SearchMode.KEYWORD) {
+                hits.put("vector", vectorHits != null ? vectorHits.scoreDocs.length : 0);
+            }
+            if (keywordQuery != null) {
+                hits.put("keyword", keywordHits != null ? keywordHits.scoreDocs.length : 0);
+            }
+            hits.put("results", results.size());
+            metrics.recordSearch(mode.name().toLowerCase(Locale.ROOT), response.getTimings(), hits);
+            return response;
+        } finally {
+            if (!vectorClaimed.compareAndSet(false, true)) {
+                awaitUninterruptibly(vectorDone);
             }
+            searcherManager.release(searcher);
+        }
+    }
+
+    private static String readParentId(StoredFields storedFields, int doc) {
+        try {
+            return storedFields.document(doc, Set.of("parent_id")).get("parent_id");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return result;
     }
 
     /**
-     * 简单的句子分割逻辑。
+     * 向量召回：查询向量化 + KNN。
+     *
+     * @return 命中，向量为空或维数与索引不一致时返回 null
      */
-    private List<String> splitIntoSentences(String text) {
-        List<String> sentences = new ArrayList<>();
-        // 匹配 . ! ? 后面跟随空格或换行的位置
-        String[] parts = text.split("(?<=[。！？.!?.])\\s+");
-        for (String part : parts) {
-            if (!part.trim().isEmpty()) {
-                sentences.add(part.trim());
+    private TopDocs vectorSearch(IndexSearcher searcher, String queryString, int legTopK, SearchResponse response) throws IOException {
+        long embedStart = System.nanoTime();
+        float[] queryVector = embeddingService.getEmbedding(queryString);
+        response.addTiming("embed", System.nanoTime() - embedStart);
+        if (queryVector == null || queryVector.length == 0) {
+            return null;
+        }
+        if (indexedVectorDim > 0 && queryVector.length != indexedVectorDim) {
+            // 维数不一致时 KNN 查询会直接抛异常，降级为仅关键词召回
+            if (!dimensionMismatchLogged) {
+                dimensionMismatchLogged = true;
+                log.warn("模型向量维数 ({}) 与索引中的向量维数 ({}) 不一致，向量召回将被跳过，请清空索引后重新入库。",
+                        queryVector.length, indexedVectorDim);
             }
+            return null;
         }
-        return sentences;
+        long vectorStart = System.nanoTime();
+        TopDocs hits = searcher.search(new KnnFloatVectorQuery(VECTOR_FIELD, queryVector, legTopK), legTopK);
+        response.addTiming("vector", System.nanoTime() - vectorStart);
+        return hits;
     }
 
     /**
-     * 混合检索 (Hybrid Search)
-     * 结合向量相似度 (Semantic) 和关键词匹配 (Lexical)。
-     * 
-     * @param queryString 用户查询
-     * @return 包含文档内容、文件名和相关度得分的结果列表
+     * 等待任务结束且不响应中断，返回前恢复中断标志。
      */
-    public List<Map<String, Object>> search(String queryString) throws Exception {
-        System.out.println("[IndexService] 收到检索请求: " + queryString);
-        // 搜索时需要打开一个新的 DirectoryReader 以获取最新索引
-        try (DirectoryReader reader = DirectoryReader.open(directory)) {
-            IndexSearcher searcher = new IndexSearcher(reader);
-            
-            BooleanQuery.Builder builder = new BooleanQuery.Builder();
-            String normalizedQuery = queryString.trim();
-            boolean useKeywordMust = normalizedQuery.length() <= 2 && !normalizedQuery.contains(" ");
-            boolean keywordQueryBuilt = false;
-
-            // 1. 向量检索 (Semantic Search)
-            // 使用新集成的 EmbeddingService 获取标准化向量
-            float[] queryVector = embeddingService.getEmbedding(queryString);
-            if (queryVector != null && queryVector.length > 0) {
-                float vectorBoost = 1.0f;
-                
-                Query vectorQuery = new KnnFloatVectorQuery("vector", queryVector, 100);
-                Query boostedVectorQuery = new BoostQuery(vectorQuery, vectorBoost);
-                builder.add(boostedVectorQuery, BooleanClause.Occur.SHOULD);
-                System.out.println("[IndexService] Vector Search Added. Boost: " + vectorBoost);
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 构建关键词召回查询 (BM25)。
+     * 
+     * @return 关键词查询，解析失败时返回 null
+     */
+    private Query buildKeywordQuery(String queryString) {
+        String[] fields = {"content", "child_content", "filename"};
+        Map<String, Float> boosts = new HashMap<>();
+        boosts.put("filename", 15.0f);
+        boosts.put("content", 1.0f);       
+        boosts.put("child_content", 1.0f);
+        
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(fields, analyzer, boosts);
+        parser.setDefaultOperator(QueryParser.Operator.OR);
+        
+        try {
+            String escapedQuery = QueryParser.escape(queryString);
             
-            // 2. 关键词检索 (Keyword Search)
-            String[] fields = {"content", "child_content", "filename"};
-            Map<String, Float> boosts = new HashMap<>();
-            boosts.put("filename", 15.0f);
-            boosts.put("content", 1.0f);       
-            boosts.put("child_content", 1.0f);
-            
-            MultiFieldQueryParser parser = new MultiFieldQueryParser(fields, analyzer, boosts);
-            parser.setDefaultOperator(QueryParser.Operator.OR);
-            parser.setAllowLeadingWildcard(true);
-            
-            try {
-                String escapedQuery = QueryParser.escape(queryString);
-                Query keywordQuery;
+            if (!queryString.contains(" ") && !queryString.contains("*") && !queryString.contains("?")) {
+                BooleanQuery.Builder wordBuilder = new BooleanQuery.Builder();
+                Query exactQuery = parser.parse(escapedQuery);
+                wordBuilder.add(new BoostQuery(exactQuery, 3.0f), BooleanClause.Occur.SHOULD);
                 
-                if (!queryString.contains(" ") && !queryString.contains("*") && !queryString.contains("?")) {
-                    BooleanQuery.Builder wordBuilder = new BooleanQuery.Builder();
-                    Query exactQuery = parser.parse(escapedQuery);
-                    wordBuilder.add(new BoostQuery(exactQuery, 3.0f), BooleanClause.Occur.SHOULD);
-                    
-                    String wildcardQueryStr = "*" + escapedQuery + "*";
-                    Query wildcardQuery = parser.parse(wildcardQueryStr);
-                    wordBuilder.add(new BoostQuery(wildcardQuery, 1.0f), BooleanClause.Occur.SHOULD);
-                    
-                    keywordQuery = wordBuilder.build();
-                } else {
-                    keywordQuery = parser.parse(escapedQuery);
+                // 子串匹配走 N-gram 影子字段上的精确词项查询，不再展开 "*query*" 通配符
+                Query substringQuery = buildSubstringQuery(queryString);
+                if (substringQuery != null) {
+                    wordBuilder.add(substringQuery, BooleanClause.Occur.SHOULD);
                 }
                 
-                // 关键词基础权重
-                float keywordBoost = 1.0f;
-                Query boostedKeywordQuery = new BoostQuery(keywordQuery, keywordBoost);
-                builder.add(boostedKeywordQuery, useKeywordMust ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD);
-                System.out.println("[IndexService] Keyword Search Added. Boost: " + keywordBoost);
+                return wordBuilder.build();
+            }
+            return parser.parse(escapedQuery);
+        } catch (Exception e) {
+            log.warn("关键词解析失败: {}", e.getMessage());
+            return null;
+        }
+    }
 
-                keywordQueryBuilt = true;
-            } catch (Exception e) {
-                System.err.println("[IndexService] 关键词解析失败: " + e.getMessage());
+    /**
+     * 在 N-gram 影子字段上构建子串查询，字段权重与关键词检索保持一致（文件名 15 倍）。
+     * 
+     * @return 子串查询，查询串过短无法切出片段时返回 null
+     */
+    private Query buildSubstringQuery(String queryString) {
+        Query contentQuery = SubstringNGramAnalyzer.buildSubstringQuery(CONTENT_NGRAM, queryString);
+        Query filenameQuery = SubstringNGramAnalyzer.buildSubstringQuery(FILENAME_NGRAM, queryString);
+        if (contentQuery == null || filenameQuery == null) {
+            return null;
+        }
+        return new BooleanQuery.Builder()
+                .add(new BoostQuery(contentQuery, 1.0f), BooleanClause.Occur.SHOULD)
+                .add(new BoostQuery(filenameQuery, 15.0f), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    /**
+     * 根据 parent_id 查找父文档。旧版索引中没有父文档时返回 -1，此时子文档自身存有 content。
+     */
+    private int findParent(IndexSearcher searcher, String parentId) throws IOException {
+        Query parentQuery = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("parent_id", parentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term("doc_type", DOC_TYPE_PARENT)), BooleanClause.Occur.FILTER)
+                .build();
+        TopDocs parents = searcher.search(parentQuery, 1);
+        return parents.scoreDocs.length == 0 ? -1 : parents.scoreDocs[0].doc;
+    }
+
+    /**
+     * 存储字段访问器：只解码调用方请求的字段，并直接写入 SearchResult，避免构建中间 Document/Map。
+     */
+    private static class SearchResultFieldVisitor extends StoredFieldVisitor {
+
+        private final Set<String> fields;
+        private final SearchResult target;
+
+        SearchResultFieldVisitor(Set<String> fields, SearchResult target) {
+            this.fields = fields;
+            this.target = target;
+        }
+
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            if ("doc_type".equals(fieldInfo.name)) {
+                return Status.NO;
             }
-            
-            BooleanQuery hybridQuery = builder.build();
-            System.out.println("[IndexService] 最终 Query: " + hybridQuery.toString());
-            
-            // 如果两个查询都为空，直接返回空
-            if (hybridQuery.clauses().isEmpty()) {
-                return new ArrayList<>();
+            return fields == null || fields.contains(fieldInfo.name) ? Status.YES : Status.NO;
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, String value) {
+            switch (fieldInfo.name) {
+                case "filename" -> target.setFilename(value);
+                case "parent_id" -> target.setParentId(value);
+                case "content" -> target.setContent(value);
+                case "child_content" -> target.setChildContent(value);
+                case "anchor" -> target.setAnchor(value);
+                case "image_id" -> target.setImageId(value);
+                default -> target.addMetadata(fieldInfo.name, value);
             }
-            if (useKeywordMust && !keywordQueryBuilt) {
-                return new ArrayList<>();
+        }
+
+        @Override
+        public void intField(FieldInfo fieldInfo, int value) {
+            if ("chunk_id".equals(fieldInfo.name)) {
+                target.setChunkId(value);
+            } else {
+                target.addMetadata(fieldInfo.name, Integer.toString(value));
             }
+        }
+    }
 
-            // 4. 执行检索
-            TopDocs docs = searcher.search(hybridQuery, 20);
-            float maxRawScore = docs.scoreDocs.length > 0 ? docs.scoreDocs[0].score : 0.0f;
-            System.out.println("[IndexService] 检索完成，命中文档数: " + docs.totalHits.value + ", MaxScore: " + maxRawScore);
-            
-            List<Map<String, Object>> results = new ArrayList<>();
-            Set<String> seenParentIds = new HashSet<>();
-            
-            for (ScoreDoc scoreDoc : docs.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc);
-                String parentId = doc.get("parent_id");
-                
-                // Deduplicate by Parent Chunk ID
-                if (parentId != null && seenParentIds.contains(parentId)) {
+    /**
+     * 抽取索引中已有的子分块向量（跳过已删除文档与全零向量），供向量编码对比报告使用。
+     * 
+     * @param max 最多返回的向量数
+     */
+    public List<float[]> sampleVectors(int max) throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                FloatVectorValues values = leaf.reader().getFloatVectorValues(VECTOR_FIELD);
+                if (values == null) {
                     continue;
                 }
-                if (parentId != null) {
-                    seenParentIds.add(parentId);
-                }
-                
-                Map<String, Object> item = new HashMap<>();
-                item.put("score", scoreDoc.score);
-                item.put("max_raw_score", maxRawScore);
-                
-                // Extract all stored fields
-                for (IndexableField field : doc.getFields()) {
-                    if (field.fieldType().stored()) {
-                        String val = field.stringValue();
-                        if (val != null) {
-                            item.put(field.name(), val);
-                        } else if (field.numericValue() != null) {
-                            item.put(field.name(), field.numericValue());
-                        }
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                    if (vectors.size() >= max) {
+                        return vectors;
+                    }
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    float[] vector = values.vectorValue();
+                    if (VectorUtil.dotProduct(vector, vector) > 0) {
+                        vectors.add(vector.clone());
                     }
                 }
-                
-                results.add(item);
             }
-            System.out.println("[IndexService] 返回去重后的结果数: " + results.size());
-            return results;
-        } catch (IndexNotFoundException e) {
-            return new ArrayList<>();
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return vectors;
+    }
+
+    /**
+     * 索引规模统计：磁盘占用与父/子文档数，用于评估索引布局调整前后的体积变化。
+     */
+    public Map<String, Object> getIndexStats() throws IOException {
+        long indexBytes = 0;
+        for (String file : directory.listAll()) {
+            try {
+                indexBytes += directory.fileLength(file);
+            } catch (NoSuchFileException e) {
+                // 合并过程中文件可能已被删除
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("indexBytes", indexBytes);
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            stats.put("numDocs", searcher.getIndexReader().numDocs());
+            stats.put("parentDocs", searcher.count(new TermQuery(new Term("doc_type", DOC_TYPE_PARENT))));
+            stats.put("childDocs", searcher.count(new TermQuery(new Term("doc_type", DOC_TYPE_CHILD))));
+            stats.put("files", searcher.count(new TermQuery(new Term("doc_type", DOC_TYPE_FILE))));
+        } finally {
+            searcherManager.release(searcher);
+        }
+        if (queryCache != null) {
+            stats.put("queryCache", queryCache.getStats());
         }
+        return stats;
     }
 }
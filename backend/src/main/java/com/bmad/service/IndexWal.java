@@ -0,0 +1,331 @@
+package com.bmad.service;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 索引写前日志 (WAL)。
+ *
+ * 职责：
+ * 1. 在写入 IndexWriter 的同时把操作（整文件替换、删除、清空）追加到日志文件，
+ *    进程崩溃时尚未 commit 的文档可以在下次启动时重放恢复。
+ * 2. 日志按段滚动：提交前滚动到新段，提交成功后删除此前的所有段。
+ *    滚动之后、提交之前写入的操作可能已包含在本次提交中，重放时会再执行一次，
+ *    因此只记录幂等操作：按文件名替换、按文件名删除、清空。不带键的追加无法安全重放，不提供。
+ *
+ * 记录格式：[int 长度][long CRC32][载荷]，载荷以操作类型字节开头；
+ * 末尾不完整或校验失败的记录视为崩溃时的半截写入，直接丢弃。
+ */
+public class IndexWal {
+
+    /**
+     * 日志中的操作类型。
+     */
+    public enum Op {
+        REPLACE, DELETE, CLEAR
+    }
+
+    private static final Op[] OPS = Op.values();
+
+    /**
+     * 重放时回调的一条日志记录。
+     */
+    public record Entry(Op op, String key, List<Document> docs) {
+    }
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // 字段类型标签：只覆盖 IndexService 实际写入的字段种类
+    private static final byte STRING = 1;
+    private static final byte TEXT = 2;
+    private static final byte STORED = 3;
+    private static final byte INT = 4;
+    private static final byte VECTOR = 5;
+    private static final byte SORTED_DV = 6;
+    private static final byte NUMERIC_DV = 7;
+    private static final byte DOCS_ONLY = 8;
+
+    private final Path dir;
+    private final FieldType docsOnlyType;
+    private FileChannel channel;
+    private long segment;
+
+    /**
+     * @param dir 日志目录
+     * @param docsOnlyType 只建倒排、不存储的分词字段类型（如 N-gram 影子字段），重放时按此类型重建
+     */
+    public IndexWal(Path dir, FieldType docsOnlyType) throws IOException {
+        this.dir = dir;
+        this.docsOnlyType = docsOnlyType;
+        Files.createDirectories(dir);
+        for (Path path : listSegments()) {
+            segment = Math.max(segment, segmentNumber(path));
+        }
+        openSegment(segment + 1);
+    }
+
+    /**
+     * 追加一条日志（只写入操作系统缓冲，落盘由 {@link #sync()} 或 {@link #roll()} 完成）。
+     */
+    public synchronized void append(Op op, String key, List<Document> docs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op.ordinal());
+        out.writeUTF(key == null ? "" : key);
+        out.writeInt(docs == null ? 0 : docs.size());
+        if (docs != null) {
+            for (Document doc : docs) {
+                writeDocument(out, doc);
+            }
+        }
+        out.flush();
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(12 + payload.length);
+        record.putInt(payload.length).putLong(crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * 将当前段已追加的记录落盘 (fsync)。
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * 滚动到新的日志段。
+     *
+     * @return 滚动前最后一个段的编号，提交成功后传给 {@link #truncate(long)}
+     */
+    public synchronized long roll() throws IOException {
+        long sealed = segment;
+        channel.force(false);
+        channel.close();
+        openSegment(segment + 1);
+        return sealed;
+    }
+
+    /**
+     * 删除编号不超过 upTo 的日志段（对应操作已被 Lucene 提交持久化）。
+     */
+    public void truncate(long upTo) throws IOException {
+        for (Path path : listSegments()) {
+            if (segmentNumber(path) <= upTo) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 按顺序读取当前段之前的全部日志记录，用于启动时重放。
+     */
+    public synchronized List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Path path : listSegments()) {
+            if (segmentNumber(path) >= segment) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                readSegment(in, entries);
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void readSegment(DataInputStream in, List<Entry> entries) throws IOException {
+        while (true) {
+            int length;
+            long checksum;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readLong();
+                if (length < 0) {
+                    return;
+                }
+                payload = in.readNBytes(length);
+            } catch (EOFException e) {
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (payload.length != length || crc.getValue() != checksum) {
+                return;
+            }
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            int code = record.readByte();
+            if (code < 0 || code >= OPS.length) {
+                // 未知的操作类型与校验失败一样视为损坏，不再读取后续记录
+                return;
+            }
+            Op op = OPS[code];
+            String key = record.readUTF();
+            int docCount = record.readInt();
+            List<Document> docs = new ArrayList<>(docCount);
+            for (int i = 0; i < docCount; i++) {
+                docs.add(readDocument(record));
+            }
+            entries.add(new Entry(op, key, docs));
+        }
+    }
+
+    private void writeDocument(DataOutputStream out, Document doc) throws IOException {
+        List<IndexableField> fields = doc.getFields();
+        out.writeInt(fields.size());
+        for (IndexableField field : fields) {
+            out.writeUTF(field.name());
+            if (field instanceof KnnFloatVectorField vectorField) {
+                float[] vector = vectorField.vectorValue();
+                out.writeByte(VECTOR);
+                out.writeByte(vectorField.fieldType().vectorSimilarityFunction().ordinal());
+                out.writeInt(vector.length);
+                for (float v : vector) {
+                    out.writeFloat(v);
+                }
+            } else if (field instanceof IntField) {
+                out.writeByte(INT);
+                out.writeBoolean(field.fieldType().stored());
+                out.writeInt(field.numericValue().intValue());
+            } else if (field instanceof SortedDocValuesField) {
+                BytesRef value = field.binaryValue();
+                out.writeByte(SORTED_DV);
+                out.writeInt(value.length);
+                out.write(value.bytes, value.offset, value.length);
+            } else if (field instanceof NumericDocValuesField) {
+                out.writeByte(NUMERIC_DV);
+                out.writeLong(field.numericValue().longValue());
+            } else if (field instanceof StringField) {
+                out.writeByte(STRING);
+                out.writeBoolean(field.fieldType().stored());
+                writeString(out, field.stringValue());
+            } else if (field instanceof TextField) {
+                out.writeByte(TEXT);
+                out.writeBoolean(field.fieldType().stored());
+                writeString(out, field.stringValue());
+            } else if (field instanceof StoredField) {
+                out.writeByte(STORED);
+                writeString(out, field.stringValue());
+            } else if (field.fieldType().indexOptions() == IndexOptions.DOCS && field.fieldType().tokenized()) {
+                out.writeByte(DOCS_ONLY);
+                writeString(out, field.stringValue());
+            } else {
+                throw new IOException("WAL 不支持的字段类型: " + field.name() + " (" + field.getClass().getSimpleName() + ")");
+            }
+        }
+    }
+
+    private Document readDocument(DataInputStream in) throws IOException {
+        Document doc = new Document();
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            String name = in.readUTF();
+            byte tag = in.readByte();
+            switch (tag) {
+                case VECTOR -> {
+                    VectorSimilarityFunction similarity = VectorSimilarityFunction.values()[in.readByte()];
+                    float[] vector = new float[in.readInt()];
+                    for (int j = 0; j < vector.length; j++) {
+                        vector[j] = in.readFloat();
+                    }
+                    doc.add(new KnnFloatVectorField(name, vector, similarity));
+                }
+                case INT -> {
+                    Field.Store store = in.readBoolean() ? Field.Store.YES : Field.Store.NO;
+                    doc.add(new IntField(name, in.readInt(), store));
+                }
+                case SORTED_DV -> {
+                    byte[] value = in.readNBytes(in.readInt());
+                    doc.add(new SortedDocValuesField(name, new BytesRef(value)));
+                }
+                case NUMERIC_DV -> doc.add(new NumericDocValuesField(name, in.readLong()));
+                case STRING -> {
+                    Field.Store store = in.readBoolean() ? Field.Store.YES : Field.Store.NO;
+                    doc.add(new StringField(name, readString(in), store));
+                }
+                case TEXT -> {
+                    Field.Store store = in.readBoolean() ? Field.Store.YES : Field.Store.NO;
+                    doc.add(new TextField(name, readString(in), store));
+                }
+                case STORED -> doc.add(new StoredField(name, readString(in)));
+                case DOCS_ONLY -> doc.add(new Field(name, readString(in), docsOnlyType));
+                default -> throw new IOException("WAL 记录损坏，未知字段类型: " + tag);
+            }
+        }
+        return doc;
+    }
+
+    // writeUTF 限制 64KB，分块文本可能超过该长度，因此按字节长度前缀写入
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        channel = FileChannel.open(dir.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
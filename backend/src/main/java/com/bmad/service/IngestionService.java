@@ -0,0 +1,403 @@
+package com.bmad.service;
+
+import com.bmad.model.DocumentSegment;
+import com.bmad.model.Durability;
+import com.bmad.model.IngestionJob;
+import com.bmad.model.IngestionJob.FileProgress;
+import com.bmad.model.IngestionJob.Stage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 异步入库流水线服务。
+ *
+ * 职责：
+ * 1. 上传请求只负责把文件落盘并登记任务，立即返回任务 ID。
+ * 2. 解析 (parse) → 分块 (chunk) → 向量化 (embed) → 写索引 (index) 四个阶段各自拥有独立的工作线程池，
+ *    阶段之间通过有界队列衔接，下游变慢时上游自动阻塞形成背压。
+ * 3. 分块之后以「文档批」为单位向量化，同一文件的不同批次可以并行推进；
+ *    文件的全部批次向量化完成后，以文件为单位进入写索引阶段。
+ * 4. 记录每个文件所处阶段与进度，供任务状态接口查询；已写入数只在索引写入成功后累加。
+ * 5. 按文件名 upsert：解析前先比对文件内容哈希，未变化的文件直接跳过；
+ *    变化的文件在写索引阶段一次性替换旧分块，检索不会看到新旧混杂的中间状态。
+ * 6. 每个任务写入提交时指定的集合，不同集合的文件共用同一条流水线，但各自写入、提交独立的索引。
+ */
+@Service
+public class IngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionService.class);
+
+    @Value("${bmad.ingest.parse-workers:2}")
+    private int parseWorkers;
+
+    @Value("${bmad.ingest.chunk-workers:1}")
+    private int chunkWorkers;
+
+    @Value("${bmad.ingest.embed-workers:2}")
+    private int embedWorkers;
+
+    @Value("${bmad.ingest.index-workers:1}")
+    private int indexWorkers;
+
+    @Value("${bmad.ingest.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${bmad.ingest.max-retained-jobs:100}")
+    private int maxRetainedJobs;
+
+    @Value("${bmad.ingest.spool-dir:${java.io.tmpdir}/bmad-upload}")
+    private String spoolDir;
+
+    private final DocumentService documentService;
+    private final CollectionService collectionService;
+    private final EmbeddingService embeddingService;
+    private final PipelineMetrics metrics;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final List<ExecutorService> stagePools = new ArrayList<>();
+
+    // 解析队列只保存已落盘文件的引用，因此不设上限，避免上传线程被阻塞
+    private final BlockingQueue<WorkItem> parseQueue = new LinkedBlockingQueue<>();
+    private BlockingQueue<WorkItem> chunkQueue;
+    private BlockingQueue<WorkItem> embedQueue;
+    private BlockingQueue<WorkItem> indexQueue;
+
+    public IngestionService(DocumentService documentService, CollectionService collectionService,
+                            EmbeddingService embeddingService, PipelineMetrics metrics) {
+        this.documentService = documentService;
+        this.collectionService = collectionService;
+        this.embeddingService = embeddingService;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(spoolDir));
+        chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        embedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        indexQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        startStage("parse", parseWorkers, parseQueue, this::parse);
+        startStage("chunk", chunkWorkers, chunkQueue, this::chunk);
+        startStage("embed", embedWorkers, embedQueue, this::embed);
+        startStage("index", indexWorkers, indexQueue, this::index);
+        log.info("入库流水线已启动 (parse={}, chunk={}, embed={}, index={})", parseWorkers, chunkWorkers, embedWorkers, indexWorkers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService pool : stagePools) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交一批上传文件。文件先落盘到临时目录，随后交由流水线异步处理。
+     *
+     * @param files 上传的多部分文件
+     * @param collection 目标集合名，null 表示默认集合；集合不存在时自动创建
+     * @param durability 文件在何种持久化级别达成后标记为完成
+     * @return 新建的入库任务
+     * @throws IllegalArgumentException 集合名不合法
+     */
+    public IngestionJob submit(MultipartFile[] files, String collection, Durability durability) throws IOException {
+        IndexService index = collectionService.getOrCreate(collection);
+        IngestionJob job = new IngestionJob(durability, index.getCollection());
+        List<FileTask> tasks = new ArrayList<>();
+
+        for (MultipartFile file : files) {
+            String filename = file.getOriginalFilename();
+            if (filename == null) {
+                filename = "unknown";
+            }
+            FileProgress progress = job.addFile(filename);
+            try {
+                // 请求结束后 Spring 会清理 multipart 临时文件，必须先转存
+                Path spooled = Files.createTempFile(Paths.get(spoolDir), "upload-", ".part");
+                file.transferTo(spooled);
+                tasks.add(new FileTask(filename, spooled, progress, index, durability));
+            } catch (IOException e) {
+                progress.fail("文件暂存失败: " + e.getMessage());
+            }
+        }
+
+        evictFinishedJobs();
+        jobs.put(job.getJobId(), job);
+        for (FileTask task : tasks) {
+            parseQueue.add(new WorkItem(task, null, null, -1));
+        }
+        return job;
+    }
+
+    /**
+     * 查询任务状态。
+     *
+     * @param jobId 任务 ID
+     * @return 任务对象，不存在时返回 null
+     */
+    public IngestionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void parse(WorkItem item) throws Exception {
+        FileTask task = item.task();
+        task.progress.setStage(Stage.PARSING);
+        List<DocumentSegment> segments;
+        try {
+            task.contentHash = hashFile(task.spooled);
+            if (task.contentHash.equals(task.index.getIndexedContentHash(task.filename))) {
+                task.progress.markUnchanged();
+                metrics.recordFile("unchanged");
+                log.debug("文件内容未变化，跳过: {}", task.filename);
+                return;
+            }
+            long start = System.nanoTime();
+            segments = documentService.parseDocument(task.filename, task.spooled);
+            metrics.recordParse(extension(task.filename), System.nanoTime() - start);
+        } finally {
+            Files.deleteIfExists(task.spooled);
+        }
+        task.progress.setSegmentCount(segments.size());
+        chunkQueue.put(new WorkItem(task, segments, null, -1));
+    }
+
+    private void chunk(WorkItem item) throws Exception {
+        FileTask task = item.task();
+        task.progress.setStage(Stage.CHUNKING);
+        List<Document> docs = task.index.buildChunkDocuments(task.filename, item.segments());
+        task.progress.setChunkCount(docs.size());
+
+        int batchSize = Math.max(1, embeddingService.getBatchSize());
+        int batchCount = (docs.size() + batchSize - 1) / batchSize;
+        task.readyBatches = new AtomicReferenceArray<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            int start = i * batchSize;
+            List<Document> batch = new ArrayList<>(docs.subList(start, Math.min(start + batchSize, docs.size())));
+            task.outstandingBatches.incrementAndGet();
+            embedQueue.put(new WorkItem(task, null, batch, i));
+        }
+        task.chunkingDone = true;
+        tryFinish(task);
+    }
+
+    private void embed(WorkItem item) throws Exception {
+        FileTask task = item.task();
+        if (task.progress.getStage() == Stage.FAILED) {
+            task.outstandingBatches.decrementAndGet();
+            tryFinish(task);
+            return;
+        }
+        task.progress.setStage(Stage.EMBEDDING);
+        task.index.embedDocuments(item.docs());
+        task.progress.addEmbedded(item.docs().size());
+        // 批次先暂存，待整个文件就绪后由写索引阶段一次性替换旧分块
+        task.readyBatches.set(item.batch(), item.docs());
+        task.outstandingBatches.decrementAndGet();
+        tryFinish(task);
+    }
+
+    /**
+     * 写索引阶段：以文件为单位整体替换旧分块，写入成功后再按持久化级别提交。
+     */
+    private void index(WorkItem item) {
+        FileTask task = item.task();
+        task.progress.setStage(Stage.INDEXING);
+        List<Document> docs = new ArrayList<>(task.progress.getChunkCount());
+        for (int i = 0; i < task.readyBatches.length(); i++) {
+            docs.addAll(task.readyBatches.get(i));
+        }
+        try {
+            task.index.replaceDocuments(task.filename, task.contentHash, docs);
+        } catch (IOException | RuntimeException e) {
+            task.progress.fail("索引写入失败: " + e.getMessage());
+            metrics.recordFile("failed");
+            return;
+        }
+        task.progress.addIndexed(docs.size());
+        // 提交由 IndexService 跨文件合并执行，文件在达到所请求的持久化级别后才标记完成
+        task.index.commit(task.durability).whenComplete((ignored, e) -> {
+            if (e != null) {
+                task.progress.fail("索引提交失败: " + e.getMessage());
+                metrics.recordFile("failed");
+                return;
+            }
+            task.progress.setStage(Stage.DONE);
+            metrics.recordFile("done");
+            log.debug("文件入库完成: {} (子分块数: {})", task.filename, task.progress.getIndexedCount());
+        });
+    }
+
+    /**
+     * 文件的所有批次均已向量化（或已失败）时收尾：失败的文件记录结果，否则以文件为单位交给写索引阶段。
+     * 分块阶段与向量化阶段都可能是最后一个到达者，因此用 CAS 保证只收尾一次。
+     */
+    private void tryFinish(FileTask task) throws InterruptedException {
+        if (!task.chunkingDone || task.outstandingBatches.get() > 0) {
+            return;
+        }
+        if (!task.finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (task.progress.getStage() == Stage.FAILED) {
+            metrics.recordFile("failed");
+            return;
+        }
+        indexQueue.put(new WorkItem(task, null, null, -1));
+    }
+
+    private void handleFailure(WorkItem item, Exception e) {
+        FileTask task = item.task();
+        String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        log.warn("文件处理失败: {} - {}", task.filename, errorMsg);
+        task.progress.fail(errorMsg);
+        if (task.finished.get()) {
+            // 已进入写索引阶段，不再经过收尾
+            metrics.recordFile("failed");
+            return;
+        }
+        if (item.docs() != null) {
+            task.outstandingBatches.decrementAndGet();
+        } else {
+            task.chunkingDone = true;
+        }
+        try {
+            tryFinish(task);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startStage(String name, int workers, BlockingQueue<WorkItem> queue, StageHandler handler) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread t = new Thread(r, "ingest-" + name + "-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            pool.execute(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WorkItem item;
+                    try {
+                        item = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        handler.handle(item);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        handleFailure(item, e);
+                    }
+                }
+            });
+        }
+        stagePools.add(pool);
+    }
+
+    private void evictFinishedJobs() {
+        if (jobs.size() < maxRetainedJobs) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(IngestionJob::isFinished)
+                .sorted(Comparator.comparingLong(IngestionJob::getCreatedAt))
+                .limit(jobs.size() - maxRetainedJobs + 1L)
+                .forEach(job -> jobs.remove(job.getJobId()));
+    }
+
+    @FunctionalInterface
+    private interface StageHandler {
+        void handle(WorkItem item) throws Exception;
+    }
+
+    /**
+     * 单个文件在流水线中的内部状态。
+     */
+    private static class FileTask {
+        final String filename;
+        final Path spooled;
+        final FileProgress progress;
+        // 目标集合的索引
+        final IndexService index;
+        final Durability durability;
+        // 已进入向量化阶段但尚未完成的文档批数
+        final AtomicInteger outstandingBatches = new AtomicInteger();
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile boolean chunkingDone;
+        volatile String contentHash;
+        // 按批次序号暂存已向量化的文档，保持父在前、子在后的写入顺序
+        volatile AtomicReferenceArray<List<Document>> readyBatches;
+
+        FileTask(String filename, Path spooled, FileProgress progress, IndexService index, Durability durability) {
+            this.filename = filename;
+            this.spooled = spooled;
+            this.progress = progress;
+            this.index = index;
+            this.durability = durability;
+        }
+    }
+
+    /**
+     * 阶段之间传递的工作单元：解析与写索引阶段只有文件，分块前携带片段，向量化阶段携带一批文档及其批次序号。
+     */
+    private record WorkItem(FileTask task, List<DocumentSegment> segments, List<Document> docs, int batch) {
+    }
+
+    private static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "unknown";
+    }
+
+    /**
+     * 流式计算文件的 SHA-256，作为文件级内容哈希。
+     */
+    private static String hashFile(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = Files.newInputStream(path)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -2,8 +2,12 @@ package com.bmad.service;
 
 import com.bmad.config.ModelConfig;
 import com.bmad.nativeapi.LlamaNative;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -13,15 +17,24 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 1. 封装 LlamaNative 的 JNI 调用，提供更易用的业务接口。
  * 2. 状态管理：记录模型是否已加载。
  * 3. 资源回收：确保应用关闭时释放 Native 内存。
+ * 4. 按 ModelConfig.offHeap 选择内存映射或复制加载，并记录加载方式与耗时。
  */
 @Service
 public class ModelService {
 
+    private static final Logger log = LoggerFactory.getLogger(ModelService.class);
+
     private final ModelConfig modelConfig;
+    private final EmbeddingService embeddingService;
     private final AtomicBoolean isModelLoaded = new AtomicBoolean(false);
 
-    public ModelService(ModelConfig modelConfig) {
+    // 最近一次加载的方式 (mmap / copy) 与耗时，未加载时为 null / 0
+    private volatile String loadMode;
+    private volatile long loadNanos;
+
+    public ModelService(ModelConfig modelConfig, EmbeddingService embeddingService) {
         this.modelConfig = modelConfig;
+        this.embeddingService = embeddingService;
     }
 
     /**
@@ -36,11 +49,28 @@ public class ModelService {
         }
 
         String path = modelConfig.getPath();
-        int result = LlamaNative.loadModel(path);
+        long start = System.nanoTime();
+        String mode = "copy";
+        int result;
+        if (modelConfig.isOffHeap()) {
+            result = LlamaNative.mapModel(path);
+            if (result == 1) {
+                mode = "mmap";
+            } else {
+                log.warn("模型文件无法以内存映射方式加载，改为复制加载: {}", path);
+                result = LlamaNative.loadModel(path);
+            }
+        } else {
+            result = LlamaNative.loadModel(path);
+        }
+        long elapsed = System.nanoTime() - start;
 
         if (result == 1) {
+            loadMode = mode;
+            loadNanos = elapsed;
             isModelLoaded.set(true);
-            return "模型加载成功: " + path;
+            log.info("模型加载完成 (mode={}, {} ms): {}", mode, elapsed / 1_000_000, path);
+            return "模型加载成功 (" + mode + "): " + path;
         } else {
             return "模型加载失败，请检查路径: " + path;
         }
@@ -58,6 +88,8 @@ public class ModelService {
 
         LlamaNative.freeModel();
         isModelLoaded.set(false);
+        loadMode = null;
+        loadNanos = 0;
         return "模型已卸载，原生资源已释放。";
     }
 
@@ -80,6 +112,41 @@ public class ModelService {
         return isModelLoaded.get();
     }
 
+    /**
+     * 获取原生内存占用与模型加载信息，用于评估主机内存规格。
+     * 
+     * @return 加载方式、加载耗时、映射/复制字节数、模型驻留字节数与进程常驻内存（-1 表示平台不支持查询）
+     */
+    public Map<String, Object> getMemoryStats() {
+        long[] nativeStats = LlamaNative.getMemoryStats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loadMode", loadMode);
+        stats.put("loadTimeMs", loadNanos / 1_000_000.0);
+        stats.put("mappedBytes", nativeStats[LlamaNative.MEMORY_MAPPED_BYTES]);
+        stats.put("copiedBytes", nativeStats[LlamaNative.MEMORY_COPIED_BYTES]);
+        stats.put("modelResidentBytes", nativeStats[LlamaNative.MEMORY_MODEL_RESIDENT_BYTES]);
+        stats.put("processResidentBytes", nativeStats[LlamaNative.MEMORY_PROCESS_RESIDENT_BYTES]);
+        return stats;
+    }
+
+    /**
+     * 获取向量缓存命中统计。
+     * 
+     * @return 内存/磁盘命中数、未命中数与命中率
+     */
+    public Map<String, Object> getEmbeddingCacheStats() {
+        return embeddingService.getCacheStats();
+    }
+
+    /**
+     * 获取原生推理上下文池的使用情况。
+     * 
+     * @return 上下文总数与当前空闲数
+     */
+    public Map<String, Object> getContextStats() {
+        return embeddingService.getContextStats();
+    }
+
     /**
      * 生命周期管理：在 Spring Bean 销毁前（应用关闭前）
      * 强制执行内存释放，防止原生层出现内存泄漏。
@@ -87,7 +154,7 @@ public class ModelService {
     @PreDestroy
     public void cleanup() {
         if (isModelLoaded.get()) {
-            System.out.println("[Service] 应用即将关闭，正在释放模型资源...");
+            log.info("应用即将关闭，正在释放模型资源...");
             unloadModel();
         }
     }
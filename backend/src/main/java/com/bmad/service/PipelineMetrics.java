@@ -0,0 +1,156 @@
+package com.bmad.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 入库与检索流水线的 Micrometer 指标。
+ *
+ * 职责：
+ * 1. 统一定义各阶段的指标名与标签，业务代码只调用 record* 方法，不直接依赖 MeterRegistry。
+ * 2. 耗时类指标发布直方图桶，通过 /actuator/prometheus 暴露后可在 Prometheus 侧计算任意分位数。
+ *
+ * 指标一览：
+ * - bmad.ingest.parse{format}：单个文件解析耗时
+ * - bmad.ingest.files{outcome}：处理完成 / 内容未变化跳过 / 失败的文件数
+ * - bmad.ingest.chunks{level}：单个文件产生的父 / 子分块数
+ * - bmad.embedding.batch：单次 JNI 批量向量化耗时；bmad.embedding.batch.size：批内实际送入模型的文本数
+ * - bmad.index.commit{outcome}：组提交耗时
+ * - bmad.index.refresh.lag：写入到对检索可见的延迟（NRT 刷新滞后）
+ * - bmad.search.stage{mode,stage}：检索各阶段耗时；bmad.search.hits{mode,leg}：各路召回与最终返回的结果数
+ * - bmad.search.cache{result}：检索结果缓存的命中 / 合并等待 / 未命中次数
+ */
+@Component
+public class PipelineMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer embeddingBatch;
+    private final DistributionSummary embeddingBatchSize;
+    private final Timer refreshLag;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.embeddingBatch = Timer.builder("bmad.embedding.batch")
+                .description("单次批量向量化的原生调用耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.embeddingBatchSize = DistributionSummary.builder("bmad.embedding.batch.size")
+                .description("单次批量向量化送入模型的文本数（不含缓存命中）")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.refreshLag = Timer.builder("bmad.index.refresh.lag")
+                .description("首个未可见写入到 NRT 搜索器刷新完成的时间")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * 不接入任何监控后端的实例，供脱离 Spring 容器构建的服务（测试、基准）使用。
+     */
+    public static PipelineMetrics noop() {
+        return new PipelineMetrics(new CompositeMeterRegistry());
+    }
+
+    public void recordParse(String format, long nanos) {
+        Timer.builder("bmad.ingest.parse")
+                .description("单个文件的解析耗时")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param outcome done / unchanged / failed
+     */
+    public void recordFile(String outcome) {
+        Counter.builder("bmad.ingest.files")
+                .description("入库流水线处理的文件数")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordChunks(int parents, int children) {
+        chunkSummary("parent").record(parents);
+        chunkSummary("child").record(children);
+    }
+
+    private DistributionSummary chunkSummary(String level) {
+        return DistributionSummary.builder("bmad.ingest.chunks")
+                .description("单个文件产生的分块数")
+                .tag("level", level)
+                .register(registry);
+    }
+
+    public void recordEmbeddingBatch(long nanos, int size) {
+        embeddingBatch.record(nanos, TimeUnit.NANOSECONDS);
+        embeddingBatchSize.record(size);
+    }
+
+    /**
+     * @param success 提交是否成功
+     */
+    public void recordCommit(long nanos, boolean success) {
+        Timer.builder("bmad.index.commit")
+                .description("组提交（IndexWriter.commit 与刷新）耗时")
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRefreshLag(long nanos) {
+        refreshLag.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 以函数计数器按集合暴露检索结果缓存的命中统计，命中率可由 hit / (hit + coalesced + miss) 计算。
+     */
+    public void registerQueryCache(QueryResultCache cache, String collection) {
+        cacheCounter(cache, collection, "hit", QueryResultCache::getHits);
+        cacheCounter(cache, collection, "coalesced", QueryResultCache::getCoalesced);
+        cacheCounter(cache, collection, "miss", QueryResultCache::getMisses);
+    }
+
+    private void cacheCounter(QueryResultCache cache, String collection, String result, ToDoubleFunction<QueryResultCache> f) {
+        FunctionCounter.builder("bmad.search.cache", cache, f)
+                .description("检索结果缓存的查询次数")
+                .tags("collection", collection, "result", result)
+                .register(registry);
+    }
+
+    /**
+     * 记录一次检索的各阶段耗时与各路命中数。
+     *
+     * @param mode 检索模式
+     * @param timings 阶段耗时（毫秒），与 Server-Timing 响应头一致
+     * @param hits 各路命中数（vector / keyword / results），某一路未执行时不包含该键
+     */
+    public void recordSearch(String mode, Map<String, Double> timings, Map<String, Integer> hits) {
+        for (Map.Entry<String, Double> timing : timings.entrySet()) {
+            Timer.builder("bmad.search.stage")
+                    .description("检索各阶段耗时")
+                    .tags("mode", mode, "stage", timing.getKey())
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record((long) (timing.getValue() * 1_000_000), TimeUnit.NANOSECONDS);
+        }
+        for (Map.Entry<String, Integer> hit : hits.entrySet()) {
+            DistributionSummary.builder("bmad.search.hits")
+                    .description("各路召回与最终返回的结果数")
+                    .tags("mode", mode, "leg", hit.getKey())
+                    .register(registry)
+                    .record(hit.getValue());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.bmad.service;
+
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResponse;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按索引代数失效的检索结果缓存。
+ *
+ * 职责：
+ * 1. 以「归一化查询 + 返回字段 + 检索模式」为键缓存完整的检索响应，容量受限，按 LRU 淘汰。
+ * 2. 每个条目记录写入时的索引代数 (generation)；NRT 搜索器刷新出新内容后代数递增，旧代数的条目不再命中。
+ * 3. 相同键、相同代数的并发查询只执行一次，其余请求等待同一结果（请求合并）。
+ */
+public class QueryResultCache {
+
+    /**
+     * 缓存键。fields 为排序后的字段列表，null 表示返回全部字段。
+     */
+    public record Key(String query, List<String> fields, SearchMode mode) {
+    }
+
+    /**
+     * 未命中时执行实际检索。
+     */
+    @FunctionalInterface
+    public interface Loader {
+        SearchResponse load() throws Exception;
+    }
+
+    private record Entry(long generation, SearchResponse response) {
+    }
+
+    private record FlightKey(Key key, long generation) {
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private final Map<FlightKey, CompletableFuture<SearchResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries 最多缓存的查询条数
+     */
+    public QueryResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > QueryResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 构建缓存键：查询去除首尾空白并把连续空白折叠为单个空格，字段按名称排序。
+     */
+    public static Key key(String query, Set<String> fields, SearchMode mode) {
+        String normalized = query == null ? "" : query.trim().replaceAll("\\s+", " ");
+        return new Key(normalized, fields == null ? null : fields.stream().sorted().toList(), mode);
+    }
+
+    /**
+     * 查询缓存，未命中时执行 loader；同一键与代数的并发未命中只执行一次 loader。
+     *
+     * @param key 缓存键
+     * @param generation 当前索引代数
+     * @param loader 实际检索
+     * @return 命中时返回的响应只替换耗时信息，结果列表与原响应共享
+     */
+    public SearchResponse get(Key key, long generation, Loader loader) throws Exception {
+        long start = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.generation() == generation) {
+            hits.incrementAndGet();
+            return hitResponse(entry.response(), "cache-hit", start);
+        }
+
+        FlightKey flightKey = new FlightKey(key, generation);
+        CompletableFuture<SearchResponse> flight = new CompletableFuture<>();
+        CompletableFuture<SearchResponse> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return hitResponse(existing.join(), "cache-wait", start);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            SearchResponse response = loader.load();
+            synchronized (entries) {
+                Entry current = entries.get(key);
+                // 执行期间索引可能已刷新并写入了更新代数的结果，不能用旧结果覆盖
+                if (current == null || current.generation() <= generation) {
+                    entries.put(key, new Entry(generation, response));
+                }
+            }
+            flight.complete(response);
+            return response;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * 清空所有条目（索引刷新后调用，及时释放旧代数结果占用的内存）。
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 获取命中统计：合并等待的请求同样没有执行检索，计入命中率。
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.get();
+        long wait = coalesced.get();
+        long miss = misses.get();
+        long total = hit + wait + miss;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hit);
+        stats.put("coalesced", wait);
+        stats.put("misses", miss);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (hit + wait) / total);
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        return stats;
+    }
+
+    private static SearchResponse hitResponse(SearchResponse cached, String stage, long start) {
+        SearchResponse response = new SearchResponse();
+        response.setResults(cached.getResults());
+        response.setFusionMode(cached.getFusionMode());
+        response.addTiming(stage, System.nanoTime() - start);
+        return response;
+    }
+}
@@ -0,0 +1,133 @@
+package com.bmad.service;
+
+import com.bmad.config.FusionConfig;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 混合检索融合引擎。
+ * 
+ * 职责：将向量召回 (KNN) 与关键词召回 (BM25) 两路独立的排序结果合并为一个排序。
+ * 两路原始得分尺度不同（余弦相似度 vs BM25），因此不能直接相加：
+ * 1. rrf: 只看名次，score = Σ weight / (k + rank)。
+ * 2. weighted: 每路先 min-max 归一化到 [0, 1]，再加权求和。
+ *
+ * 可按分组键融合：同一分组（如同一父分块的父文档与子文档）的命中合并为一个候选，
+ * 每一路只计该分组排名最高的一次命中。
+ */
+@Component
+public class RankFusion {
+
+    private final FusionConfig config;
+
+    public RankFusion(FusionConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 融合后的单个命中，保留两路的原始得分便于调试与展示。
+     * 
+     * @param doc Lucene 文档 ID；按分组融合时为该分组最先出现的命中（向量召回优先）
+     * @param score 融合得分
+     * @param vectorScore 向量召回原始得分，未被该路召回时为 null
+     * @param keywordScore 关键词召回原始得分，未被该路召回时为 null
+     */
+    public record FusedHit(int doc, float score, Float vectorScore, Float keywordScore) {
+    }
+
+    /**
+     * 融合两路召回结果，以文档 ID 为单位。
+     * 
+     * @param vectorHits 向量召回结果，可为 null
+     * @param keywordHits 关键词召回结果，可为 null
+     * @param keywordRequired 为 true 时只保留被关键词召回命中的文档（短查询场景）
+     * @return 按融合得分降序排列的前 topN 个命中
+     */
+    public List<FusedHit> fuse(TopDocs vectorHits, TopDocs keywordHits, boolean keywordRequired) {
+        return fuse(vectorHits, keywordHits, keywordRequired, null);
+    }
+
+    /**
+     * 融合两路召回结果，分组键相同的命中合并为一个候选。
+     * 
+     * @param vectorHits 向量召回结果，可为 null
+     * @param keywordHits 关键词召回结果，可为 null
+     * @param keywordRequired 为 true 时只保留被关键词召回命中的分组（短查询场景）
+     * @param groupOf 文档 ID 到分组键的映射，为 null 或返回 null 时以文档自身为一组
+     * @return 按融合得分降序排列的前 topN 个命中
+     */
+    public List<FusedHit> fuse(TopDocs vectorHits, TopDocs keywordHits, boolean keywordRequired, IntFunction<String> groupOf) {
+        boolean weighted = "weighted".equalsIgnoreCase(config.getMode());
+        Map<Object, Candidate> acc = new HashMap<>();
+
+        accumulate(acc, vectorHits, 0, config.getVectorWeight(), weighted, groupOf);
+        accumulate(acc, keywordHits, 1, config.getKeywordWeight(), weighted, groupOf);
+
+        List<FusedHit> fused = new ArrayList<>(acc.size());
+        for (Candidate c : acc.values()) {
+            Float vectorScore = Float.isNaN(c.legScores[0]) ? null : c.legScores[0];
+            Float keywordScore = Float.isNaN(c.legScores[1]) ? null : c.legScores[1];
+            if (keywordRequired && keywordScore == null) {
+                continue;
+            }
+            fused.add(new FusedHit(c.doc, c.score, vectorScore, keywordScore));
+        }
+
+        fused.sort(Comparator.comparingDouble(FusedHit::score).reversed().thenComparingInt(FusedHit::doc));
+        return fused.size() > config.getTopN() ? new ArrayList<>(fused.subList(0, config.getTopN())) : fused;
+    }
+
+    /**
+     * 累加某一路的贡献。同一分组在同一路中只计排名最高的命中，避免子分块多的父分块被重复加分。
+     */
+    private void accumulate(Map<Object, Candidate> acc, TopDocs hits, int leg, float weight, boolean weighted,
+                            IntFunction<String> groupOf) {
+        if (hits == null || hits.scoreDocs.length == 0) {
+            return;
+        }
+        ScoreDoc[] scoreDocs = hits.scoreDocs;
+        float max = scoreDocs[0].score;
+        float min = scoreDocs[scoreDocs.length - 1].score;
+        float range = max - min;
+
+        for (int rank = 0; rank < scoreDocs.length; rank++) {
+            ScoreDoc sd = scoreDocs[rank];
+            String group = groupOf != null ? groupOf.apply(sd.doc) : null;
+            Candidate c = acc.computeIfAbsent(group != null ? group : sd.doc, k -> new Candidate(sd.doc));
+            if (!Float.isNaN(c.legScores[leg])) {
+                continue;
+            }
+            float contribution;
+            if (weighted) {
+                // 只有一个候选或得分全部相同时，视为满分
+                float normalized = range > 0 ? (sd.score - min) / range : 1.0f;
+                contribution = weight * normalized;
+            } else {
+                contribution = weight / (config.getRrfK() + rank + 1);
+            }
+            c.score += contribution;
+            c.legScores[leg] = sd.score;
+        }
+    }
+
+    /**
+     * 融合中的候选：代表文档、累计融合得分与各路原始得分（NaN 表示未被该路召回）。
+     */
+    private static final class Candidate {
+        final int doc;
+        float score;
+        final float[] legScores = {Float.NaN, Float.NaN};
+
+        Candidate(int doc) {
+            this.doc = doc;
+        }
+    }
+}
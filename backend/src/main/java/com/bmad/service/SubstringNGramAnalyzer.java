@@ -0,0 +1,110 @@
+package com.bmad.service;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 子串检索用的 N-gram 分析器。
+ *
+ * 职责：
+ * 1. 索引时把文本切成 MIN_GRAM..MAX_GRAM 长度的字符片段写入影子字段，片段不跨越空白与标点。
+ *    中文等 CJK 文本没有空格分词，字符二元/三元片段同样适用。
+ * 2. 查询时把子串拆成相同规则的片段，用普通 TermQuery 命中，替代 "*query*" 前导通配符对词典的全量扫描。
+ */
+public class SubstringNGramAnalyzer extends Analyzer {
+
+    /**
+     * 影子字段名后缀，例如 content -> content_ngram。
+     */
+    public static final String FIELD_SUFFIX = "_ngram";
+
+    static final int MIN_GRAM = 2;
+    static final int MAX_GRAM = 3;
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new NGramTokenizer(MIN_GRAM, MAX_GRAM) {
+            @Override
+            protected boolean isTokenChar(int chr) {
+                return Character.isLetterOrDigit(chr);
+            }
+        };
+        TokenStream stream = new LowerCaseFilter(tokenizer);
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(in);
+    }
+
+    /**
+     * 构建子串查询：子串中每一段连续的字母/数字都必须出现在影子字段中。
+     * 长度不超过 MAX_GRAM 的片段直接作为一个词项；更长的片段拆成重叠的 MAX_GRAM 片段并全部要求命中。
+     * 查询以常数得分返回，命中与否比命中多少更有意义。
+     *
+     * @param field 影子字段名
+     * @param text 用户输入的子串
+     * @return 子串查询；没有可用片段（如只有一个字母）时返回 null
+     */
+    public static Query buildSubstringQuery(String field, String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String run : tokenRuns(text.toLowerCase(Locale.ROOT))) {
+            int[] codePoints = run.codePoints().toArray();
+            if (codePoints.length < MIN_GRAM) {
+                continue;
+            }
+            if (codePoints.length <= MAX_GRAM) {
+                grams.add(run);
+                continue;
+            }
+            for (int i = 0; i + MAX_GRAM <= codePoints.length; i++) {
+                grams.add(new String(codePoints, i, MAX_GRAM));
+            }
+        }
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String gram : grams) {
+            builder.add(new TermQuery(new Term(field, gram)), BooleanClause.Occur.FILTER);
+        }
+        return new ConstantScoreQuery(builder.build());
+    }
+
+    /**
+     * 按非字母/数字字符切分，得到与索引端 isTokenChar 一致的连续片段。
+     */
+    private static List<String> tokenRuns(String text) {
+        List<String> runs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        text.codePoints().forEach(cp -> {
+            if (Character.isLetterOrDigit(cp)) {
+                current.appendCodePoint(cp);
+            } else if (current.length() > 0) {
+                runs.add(current.toString());
+                current.setLength(0);
+            }
+        });
+        if (current.length() > 0) {
+            runs.add(current.toString());
+        }
+        return runs;
+    }
+}
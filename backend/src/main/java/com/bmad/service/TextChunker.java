@@ -0,0 +1,365 @@
+package com.bmad.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 单遍扫描的自适应分块器。
+ *
+ * 职责：
+ * 1. 优先按段落（两个换行之间只有空白）分割；段落不超过 maxChars 时整段作为一个分块。
+ * 2. 段落过长时按句末标点后的空白切成句子，累积到 maxChars 后输出，并保留末尾 overlap 个字符作为下一块的开头。
+ * 3. 直接扫描字符下标，不使用正则 split，也不为句子和重叠文本创建中间字符串；
+ *    分块以 {@link Chunk} 的偏移区间形式惰性产出，调用 {@link Chunk#toString()} 时才复制出文本。
+ *
+ * 切分边界与原先基于正则的实现一致：长段落中句子之间的空白在分块文本中统一为一个空格。
+ */
+public class TextChunker {
+
+    private final int maxChars;
+    private final int overlap;
+
+    /**
+     * @param maxChars 单个分块的最大字符数（单个句子超长时允许超出）
+     * @param overlap 长段落相邻分块之间的重叠字符数
+     */
+    public TextChunker(int maxChars, int overlap) {
+        this.maxChars = maxChars;
+        this.overlap = overlap;
+    }
+
+    /**
+     * 惰性遍历文本的分块。
+     */
+    public Iterable<Chunk> chunks(CharSequence text) {
+        return () -> iterator(text);
+    }
+
+    public Iterator<Chunk> iterator(CharSequence text) {
+        return new ChunkIterator(text == null ? "" : text);
+    }
+
+    /**
+     * 原文中 [start, end) 区间上的一个分块。
+     * gaps 记录区间内需要折叠为单个空格的句间空白（成对的 [起, 止) 偏移），大多数分块为 null，文本即原文子串。
+     */
+    public static final class Chunk implements CharSequence {
+
+        private final CharSequence source;
+        private final int start;
+        private final int end;
+        private final int[] gaps;
+        private String text;
+
+        Chunk(CharSequence source, int start, int end, int[] gaps) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.gaps = gaps;
+        }
+
+        /**
+         * 分块在原文中的起始偏移（含）。
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * 分块在原文中的结束偏移（不含）。
+         */
+        public int end() {
+            return end;
+        }
+
+        @Override
+        public int length() {
+            if (gaps == null) {
+                return end - start;
+            }
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (gaps == null) {
+                return source.charAt(start + index);
+            }
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (gaps == null) {
+                return source.subSequence(start + from, start + to);
+            }
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            if (text == null) {
+                if (gaps == null) {
+                    text = source.subSequence(start, end).toString();
+                } else {
+                    StringBuilder sb = new StringBuilder(end - start);
+                    int pos = start;
+                    for (int g = 0; g < gaps.length; g += 2) {
+                        sb.append(source, pos, gaps[g]).append(' ');
+                        pos = gaps[g + 1];
+                    }
+                    text = sb.append(source, pos, end).toString();
+                }
+            }
+            return text;
+        }
+    }
+
+    /**
+     * 逐段落推进的分块迭代器。
+     * 长段落的句子以 [原文起点, 原文终点, 拼接后起点] 三元组记录在复用的 int 数组中，
+     * 当前累积块用拼接文本（句子之间各补一个空格）上的区间 [chunkStart, chunkEnd) 表示。
+     */
+    private final class ChunkIterator implements Iterator<Chunk> {
+
+        private final CharSequence text;
+        private int pos;
+
+        private int[] sentences = new int[48];
+        private int sentenceCount;
+        private int sentenceIndex;
+        private int chunkStart;
+        private int chunkEnd;
+        private boolean inParagraph;
+
+        private Chunk next;
+
+        ChunkIterator(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Chunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Chunk chunk = next;
+            next = null;
+            return chunk;
+        }
+
+        private Chunk advance() {
+            while (true) {
+                if (inParagraph) {
+                    Chunk chunk = nextSentenceChunk();
+                    if (chunk != null) {
+                        return chunk;
+                    }
+                    inParagraph = false;
+                }
+                if (pos >= text.length()) {
+                    return null;
+                }
+                int paraStart = pos;
+                int paraEnd = findParagraphBreak(pos);
+
+                while (paraStart < paraEnd && text.charAt(paraStart) <= ' ') {
+                    paraStart++;
+                }
+                while (paraEnd > paraStart && text.charAt(paraEnd - 1) <= ' ') {
+                    paraEnd--;
+                }
+                if (paraStart == paraEnd) {
+                    continue;
+                }
+                if (paraEnd - paraStart <= maxChars) {
+                    return new Chunk(text, paraStart, paraEnd, null);
+                }
+                splitSentences(paraStart, paraEnd);
+                sentenceIndex = 0;
+                chunkStart = 0;
+                chunkEnd = 0;
+                inParagraph = true;
+            }
+        }
+
+        /**
+         * 从 from 开始寻找段落分隔符（包含至少两个换行的连续空白），返回当前段落的结束位置，并把 pos 移到分隔符之后。
+         */
+        private int findParagraphBreak(int from) {
+            int length = text.length();
+            int i = from;
+            while (i < length) {
+                if (text.charAt(i) != '\n') {
+                    i++;
+                    continue;
+                }
+                int runEnd = i + 1;
+                int lastNewline = -1;
+                while (runEnd < length && isWhitespace(text.charAt(runEnd))) {
+                    if (text.charAt(runEnd) == '\n') {
+                        lastNewline = runEnd;
+                    }
+                    runEnd++;
+                }
+                if (lastNewline >= 0) {
+                    pos = lastNewline + 1;
+                    return i;
+                }
+                i = runEnd;
+            }
+            pos = length;
+            return length;
+        }
+
+        /**
+         * 按句末标点后的空白切分 [from, to)，记录去除首尾空白后的非空句子。
+         */
+        private void splitSentences(int from, int to) {
+            sentenceCount = 0;
+            int virtual = 0;
+            int partStart = from;
+            int i = from;
+            while (i <= to) {
+                boolean boundary = i == to;
+                int runEnd = i;
+                if (!boundary && i > from && isWhitespace(text.charAt(i)) && isTerminator(text.charAt(i - 1))) {
+                    boundary = true;
+                    while (runEnd < to && isWhitespace(text.charAt(runEnd))) {
+                        runEnd++;
+                    }
+                }
+                if (!boundary) {
+                    i++;
+                    continue;
+                }
+                int s = partStart;
+                int e = i;
+                while (s < e && text.charAt(s) <= ' ') {
+                    s++;
+                }
+                while (e > s && text.charAt(e - 1) <= ' ') {
+                    e--;
+                }
+                if (s < e) {
+                    int offset = sentenceCount * 3;
+                    if (offset + 3 > sentences.length) {
+                        sentences = Arrays.copyOf(sentences, sentences.length * 2);
+                    }
+                    sentences[offset] = s;
+                    sentences[offset + 1] = e;
+                    sentences[offset + 2] = virtual;
+                    virtual += e - s + 1;
+                    sentenceCount++;
+                }
+                if (i == to) {
+                    break;
+                }
+                partStart = runEnd;
+                i = runEnd;
+            }
+        }
+
+        /**
+         * 按句子累积并输出下一个分块；段落内没有剩余内容时返回 null。
+         */
+        private Chunk nextSentenceChunk() {
+            while (sentenceIndex < sentenceCount) {
+                int offset = sentenceIndex * 3;
+                int sentenceLength = sentences[offset + 1] - sentences[offset];
+                int currentLength = chunkEnd - chunkStart;
+                Chunk chunk = null;
+                if (currentLength > 0 && currentLength + sentenceLength > maxChars) {
+                    chunk = materialize(chunkStart, chunkEnd);
+                    chunkStart = Math.max(chunkStart, chunkEnd - overlap);
+                }
+                chunkEnd = sentences[offset + 2] + sentenceLength + 1;
+                sentenceIndex++;
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+            if (chunkEnd > chunkStart) {
+                Chunk chunk = materialize(chunkStart, chunkEnd);
+                chunkStart = chunkEnd;
+                return chunk;
+            }
+            return null;
+        }
+
+        /**
+         * 把拼接文本上的区间 [from, to) 去除首尾空白后映射回原文偏移。
+         * to 总是位于某个句子之后补的空格之后，因此结束位置就是该句在原文中的终点。
+         */
+        private Chunk materialize(int from, int to) {
+            int last = findSentence(to - 1);
+            int first = findSentence(from);
+            int startOffset = from - sentences[first * 3 + 2];
+            int start;
+            if (startOffset >= sentences[first * 3 + 1] - sentences[first * 3]) {
+                // 起点落在句后补的空格上，去除空白后从下一句开始
+                first++;
+                start = sentences[first * 3];
+            } else {
+                start = sentences[first * 3] + startOffset;
+                while (text.charAt(start) <= ' ') {
+                    start++;
+                }
+            }
+
+            int[] gaps = null;
+            int gapCount = 0;
+            for (int s = first; s < last; s++) {
+                int gapStart = sentences[s * 3 + 1];
+                int gapEnd = sentences[(s + 1) * 3];
+                if (gapEnd - gapStart == 1 && text.charAt(gapStart) == ' ') {
+                    continue;
+                }
+                if (gaps == null) {
+                    gaps = new int[(last - s) * 2];
+                }
+                gaps[gapCount++] = gapStart;
+                gaps[gapCount++] = gapEnd;
+            }
+            if (gaps != null && gapCount < gaps.length) {
+                gaps = Arrays.copyOf(gaps, gapCount);
+            }
+            return new Chunk(text, start, sentences[last * 3 + 1], gaps);
+        }
+
+        /**
+         * 二分查找拼接文本位置所在的句子（含句后补的空格）。
+         */
+        private int findSentence(int virtual) {
+            int lo = 0;
+            int hi = sentenceCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (sentences[mid * 3 + 2] <= virtual) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+    // 与正则 \s 一致：空格、\t、\n、\x0B、\f、\r
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '.' || c == '!' || c == '?';
+    }
+}
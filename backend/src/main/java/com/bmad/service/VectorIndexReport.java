@@ -0,0 +1,206 @@
+package com.bmad.service;
+
+import com.bmad.config.VectorIndexConfig;
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 向量编码对比报告。
+ *
+ * 职责：
+ * 1. 从当前索引中抽取真实的子分块向量，分别按候选编码（float32 / int8 量化、不同 M 与 beamWidth）
+ *    在内存中重建 HNSW 索引。
+ * 2. 以语料中的向量作为查询，对比暴力精确检索得到召回率 (recall@k)，并统计构建耗时、索引体积与查询延迟，
+ *    用于在自己的语料上选择 bmad.index.vector 的配置。
+ */
+@Service
+public class VectorIndexReport {
+
+    private static final String FIELD = "vector";
+    private static final long SEED = 42L;
+
+    /**
+     * 一组候选编码参数。
+     */
+    public record Candidate(String quantization, int m, int beamWidth) {
+    }
+
+    private final IndexService indexService;
+
+    public VectorIndexReport(IndexService indexService) {
+        this.indexService = indexService;
+    }
+
+    /**
+     * 基于当前索引中的向量生成对比报告。
+     *
+     * @param maxVectors 最多抽取的向量数
+     * @param queries 查询条数
+     * @param k 每次查询返回的近邻数
+     * @param candidates 候选编码参数
+     */
+    public Map<String, Object> run(int maxVectors, int queries, int k, List<Candidate> candidates) throws IOException {
+        return evaluate(indexService.sampleVectors(maxVectors), queries, k, candidates);
+    }
+
+    /**
+     * 在给定语料上评估各候选编码。
+     *
+     * @param corpus 语料向量（维数一致）
+     * @param queries 查询条数，从语料中按固定种子抽取
+     * @param k 每次查询返回的近邻数
+     * @param candidates 候选编码参数
+     */
+    public static Map<String, Object> evaluate(List<float[]> corpus, int queries, int k, List<Candidate> candidates) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("vectors", corpus.size());
+        report.put("dimension", corpus.isEmpty() ? 0 : corpus.get(0).length);
+        report.put("k", k);
+        if (corpus.isEmpty() || k <= 0) {
+            report.put("queries", 0);
+            report.put("results", List.of());
+            return report;
+        }
+
+        Random random = new Random(SEED);
+        int queryCount = Math.min(queries, corpus.size());
+        List<float[]> queryVectors = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            queryVectors.add(corpus.get(random.nextInt(corpus.size())));
+        }
+        report.put("queries", queryCount);
+
+        List<Set<Integer>> groundTruth = new ArrayList<>(queryCount);
+        for (float[] query : queryVectors) {
+            groundTruth.add(exactTopK(corpus, query, k));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            results.add(evaluateCandidate(corpus, queryVectors, groundTruth, k, candidate));
+        }
+        report.put("results", results);
+        return report;
+    }
+
+    private static Map<String, Object> evaluateCandidate(List<float[]> corpus, List<float[]> queries,
+                                                         List<Set<Integer>> groundTruth, int k, Candidate candidate) throws IOException {
+        KnnVectorsFormat format = VectorIndexConfig.buildFormat(candidate.quantization(), candidate.m(), candidate.beamWidth(), null);
+        IndexWriterConfig config = new IndexWriterConfig();
+        config.setCodec(new Lucene99Codec() {
+            @Override
+            public KnnVectorsFormat getKnnVectorsFormatForField(String field) {
+                return format;
+            }
+        });
+
+        try (Directory directory = new ByteBuffersDirectory()) {
+            long buildStart = System.nanoTime();
+            try (IndexWriter writer = new IndexWriter(directory, config)) {
+                for (float[] vector : corpus) {
+                    Document doc = new Document();
+                    doc.add(new KnnFloatVectorField(FIELD, vector, VectorSimilarityFunction.COSINE));
+                    writer.addDocument(doc);
+                }
+                // 合并为单段：文档号与语料下标一一对应，也与长期运行后合并完成的索引形态一致
+                writer.forceMerge(1);
+            }
+            long buildNanos = System.nanoTime() - buildStart;
+
+            long indexBytes = 0;
+            for (String file : directory.listAll()) {
+                indexBytes += directory.fileLength(file);
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                // 预热一轮，避免首次查询的类加载与 JIT 影响延迟统计
+                for (float[] query : queries) {
+                    searcher.search(new KnnFloatVectorQuery(FIELD, query, k), k);
+                }
+
+                long[] latencies = new long[queries.size()];
+                double recallSum = 0;
+                for (int i = 0; i < queries.size(); i++) {
+                    long start = System.nanoTime();
+                    TopDocs hits = searcher.search(new KnnFloatVectorQuery(FIELD, queries.get(i), k), k);
+                    latencies[i] = System.nanoTime() - start;
+
+                    Set<Integer> expected = groundTruth.get(i);
+                    int found = 0;
+                    for (ScoreDoc scoreDoc : hits.scoreDocs) {
+                        if (expected.contains(scoreDoc.doc)) {
+                            found++;
+                        }
+                    }
+                    recallSum += (double) found / expected.size();
+                }
+                Arrays.sort(latencies);
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("quantization", candidate.quantization());
+                result.put("m", candidate.m());
+                result.put("beamWidth", candidate.beamWidth());
+                result.put("recall", recallSum / queries.size());
+                result.put("latencyMeanMs", Arrays.stream(latencies).average().orElse(0) / 1e6);
+                result.put("latencyP95Ms", latencies[Math.min(latencies.length - 1, (int) Math.ceil(latencies.length * 0.95) - 1)] / 1e6);
+                result.put("buildMs", buildNanos / 1e6);
+                result.put("indexBytes", indexBytes);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 暴力计算余弦相似度最高的 k 个语料下标，作为召回率的基准。
+     */
+    private static Set<Integer> exactTopK(List<float[]> corpus, float[] query, int k) {
+        int n = Math.min(k, corpus.size());
+        int[] best = new int[n];
+        float[] bestScores = new float[n];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < corpus.size(); i++) {
+            float score = VectorSimilarityFunction.COSINE.compare(query, corpus.get(i));
+            if (score <= bestScores[n - 1]) {
+                continue;
+            }
+            // 插入排序维护有序的前 k 名
+            int pos = n - 1;
+            while (pos > 0 && bestScores[pos - 1] < score) {
+                bestScores[pos] = bestScores[pos - 1];
+                best[pos] = best[pos - 1];
+                pos--;
+            }
+            bestScores[pos] = score;
+            best[pos] = i;
+        }
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            result.add(best[i]);
+        }
+        return result;
+    }
+}
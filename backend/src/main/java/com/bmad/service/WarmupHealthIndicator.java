@@ -0,0 +1,30 @@
+package com.bmad.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动预热健康指标（组件名 warmup），纳入就绪探针 /actuator/health/readiness。
+ *
+ * 预热进行中返回 OUT_OF_SERVICE，失败返回 DOWN，两者均映射为 HTTP 503；预热完成或关闭时返回 UP。
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final WarmupService warmupService;
+
+    public WarmupHealthIndicator(WarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = switch (warmupService.getState()) {
+            case READY, DISABLED -> Health.up();
+            case FAILED -> Health.down();
+            case PENDING, RUNNING -> Health.outOfService();
+        };
+        return builder.withDetails(warmupService.getStatus()).build();
+    }
+}
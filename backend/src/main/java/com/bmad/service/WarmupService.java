@@ -0,0 +1,192 @@
+package com.bmad.service;
+
+import com.bmad.config.ModelConfig;
+import com.bmad.config.WarmupConfig;
+import com.bmad.model.SearchMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 启动预热服务。
+ *
+ * 职责：
+ * 1. 应用启动完成后在后台线程中依次执行各预热阶段，不阻塞 Spring 容器启动：
+ *    预读索引文件 (index) → 加载模型 (model) → 每个推理上下文上的合成向量化 (embeddings) → 多轮预热检索 (queries)。
+ *    索引预读与预热检索覆盖启动时已存在的全部集合。
+ * 2. 记录整体状态与各阶段耗时，由 WarmupHealthIndicator 接入就绪探针；预热完成之前节点不接收流量。
+ *
+ * 模型文件不存在时（开发环境）跳过模型与向量化阶段，预热检索只执行关键词召回，不会加载原生库。
+ */
+@Service
+public class WarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    /**
+     * 预热状态。READY 与 DISABLED 视为就绪。
+     */
+    public enum State {
+        PENDING, RUNNING, READY, FAILED, DISABLED
+    }
+
+    private final WarmupConfig warmupConfig;
+    private final ModelConfig modelConfig;
+    private final ModelService modelService;
+    private final EmbeddingService embeddingService;
+    private final CollectionService collectionService;
+
+    private volatile State state = State.PENDING;
+    private volatile String error;
+    private volatile long durationNanos;
+    private final Map<String, Object> phases = new LinkedHashMap<>();
+
+    public WarmupService(WarmupConfig warmupConfig, ModelConfig modelConfig, ModelService modelService,
+                         EmbeddingService embeddingService, CollectionService collectionService) {
+        this.warmupConfig = warmupConfig;
+        this.modelConfig = modelConfig;
+        this.modelService = modelService;
+        this.embeddingService = embeddingService;
+        this.collectionService = collectionService;
+    }
+
+    /**
+     * 应用启动完成后开始预热。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!warmupConfig.isEnabled()) {
+            state = State.DISABLED;
+            return;
+        }
+        state = State.RUNNING;
+        Thread thread = new Thread(this::run, "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 依次执行各预热阶段；任一阶段失败则整体失败，节点保持未就绪。
+     */
+    void run() {
+        long start = System.nanoTime();
+        log.info("开始启动预热...");
+        try {
+            if (warmupConfig.isPrefetchIndex()) {
+                phase("index", () -> {
+                    long bytes = 0;
+                    for (String name : collectionService.names()) {
+                        bytes += collectionService.get(name).prefetchIndexFiles();
+                    }
+                    return bytes + " bytes";
+                });
+            }
+
+            boolean modelReady = modelService.isLoaded();
+            if (warmupConfig.isLoadModel() && !modelReady) {
+                if (modelFileExists()) {
+                    phase("model", () -> {
+                        String message = modelService.loadModel();
+                        if (!modelService.isLoaded()) {
+                            throw new IllegalStateException(message);
+                        }
+                        return message;
+                    });
+                    modelReady = true;
+                } else {
+                    skip("model", "模型文件不存在: " + modelConfig.getPath());
+                }
+            }
+
+            if (modelReady && warmupConfig.getEmbeddings() > 0) {
+                phase("embeddings", () -> embeddingService.warmup(warmupConfig.getEmbeddings()) + " texts");
+            }
+
+            SearchMode mode = modelReady ? SearchMode.HYBRID : SearchMode.KEYWORD;
+            if (!warmupConfig.getQueries().isEmpty() && warmupConfig.getRounds() > 0) {
+                phase("queries", () -> {
+                    int executed = 0;
+                    for (String name : collectionService.names()) {
+                        IndexService index = collectionService.get(name);
+                        for (int round = 0; round < warmupConfig.getRounds(); round++) {
+                            for (String query : warmupConfig.getQueries()) {
+                                index.searchUncached(query, mode);
+                                executed++;
+                            }
+                        }
+                    }
+                    return executed + " queries (" + mode.name().toLowerCase(Locale.ROOT) + ")";
+                });
+            }
+
+            durationNanos = System.nanoTime() - start;
+            state = State.READY;
+            log.info("启动预热完成，耗时 {} ms", durationNanos / 1_000_000);
+        } catch (Exception | LinkageError e) {
+            durationNanos = System.nanoTime() - start;
+            error = e.toString();
+            state = State.FAILED;
+            log.error("启动预热失败，节点保持未就绪状态", e);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 获取预热状态与各阶段耗时。
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        synchronized (phases) {
+            status.put("phases", new LinkedHashMap<>(phases));
+        }
+        if (state == State.READY || state == State.FAILED) {
+            status.put("durationMs", durationNanos / 1_000_000);
+        }
+        if (error != null) {
+            status.put("error", error);
+        }
+        return status;
+    }
+
+    private void phase(String name, Callable<String> action) throws Exception {
+        long start = System.nanoTime();
+        String detail = action.call();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        log.info("预热阶段 {} 完成 ({} ms): {}", name, ms, detail);
+        record(name, Map.of("durationMs", ms, "detail", detail));
+    }
+
+    private void skip(String name, String reason) {
+        log.warn("跳过预热阶段 {}: {}", name, reason);
+        record(name, Map.of("skipped", reason));
+    }
+
+    private void record(String name, Object value) {
+        synchronized (phases) {
+            phases.put(name, value);
+        }
+    }
+
+    private boolean modelFileExists() {
+        String path = modelConfig.getPath();
+        try {
+            return path != null && Files.isRegularFile(Paths.get(path));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bmad.service;
+
+import com.bmad.model.SearchResponse;
+import com.bmad.model.SearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollectionServiceTest {
+
+    private static SearchResponse shard(String collection, float... scores) {
+        SearchResponse response = new SearchResponse();
+        for (int i = 0; i < scores.length; i++) {
+            SearchResult result = new SearchResult(scores[i], scores[0]);
+            result.setCollection(collection);
+            result.setChunkId(i);
+            response.getResults().add(result);
+        }
+        response.setFusionMode("rrf");
+        return response;
+    }
+
+    @Test
+    void merge_interleavesByScoreAndKeepsTopN() {
+        SearchResponse a = shard("a", 0.9f, 0.5f, 0.1f);
+        SearchResponse b = shard("b", 0.7f, 0.5f);
+        SearchResponse empty = shard("c");
+
+        SearchResponse merged = CollectionService.merge(List.of(a, b, empty), 4);
+
+        List<SearchResult> results = merged.getResults();
+        assertEquals(4, results.size());
+        assertSame(a.getResults().get(0), results.get(0));
+        assertSame(b.getResults().get(0), results.get(1));
+        // 得分相同时按集合顺序排列
+        assertSame(a.getResults().get(1), results.get(2));
+        assertSame(b.getResults().get(1), results.get(3));
+        assertEquals("rrf", merged.getFusionMode());
+        assertTrue(merged.getTimings().containsKey("merge"));
+    }
+
+    @Test
+    void isValidName_rejectsPathsAndUppercase() {
+        assertTrue(CollectionService.isValidName("manuals"));
+        assertTrue(CollectionService.isValidName("team-a_2024"));
+        assertFalse(CollectionService.isValidName("../etc"));
+        assertFalse(CollectionService.isValidName("Manuals"));
+        assertFalse(CollectionService.isValidName("-x"));
+        assertFalse(CollectionService.isValidName(CollectionService.ALL_COLLECTIONS));
+        assertFalse(CollectionService.isValidName(""));
+        assertFalse(CollectionService.isValidName(null));
+    }
+}
@@ -13,6 +13,7 @@ import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
@@ -62,6 +63,53 @@ public class DocumentServiceTest {
         assertEquals(2, segments.get(1).getMetadata().get("page_number"));
     }
 
+    private static byte[] numberedPdf(int pageCount) throws Exception {
+        try (PDDocument doc = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pageCount; i++) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 12);
+                    cs.newLineAtOffset(50, 750);
+                    cs.showText("Page " + i);
+                    cs.endText();
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void parsePdf_parallelPageRangesKeepPageOrder() throws Exception {
+        int pageCount = 9;
+        MockMultipartFile file = new MockMultipartFile("files", "manual.pdf", "application/pdf", numberedPdf(pageCount));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "pdfPagesPerTask", 2);
+        List<DocumentSegment> segments = service.parseDocument(file);
+
+        assertEquals(pageCount, segments.size());
+        for (int i = 0; i < pageCount; i++) {
+            assertEquals(i + 1, segments.get(i).getMetadata().get("page_number"));
+            assertEquals("Page " + (i + 1), segments.get(i).getContent());
+        }
+    }
+
+    @Test
+    void parsePdf_nonPositivePagesPerTaskSplitsToSinglePages() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("files", "manual.pdf", "application/pdf", numberedPdf(3));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "pdfPagesPerTask", 0);
+        List<DocumentSegment> segments = service.parseDocument(file);
+
+        assertEquals(3, segments.size());
+        assertEquals("Page 3", segments.get(2).getContent());
+    }
+
     @Test
     void parsePptx_extractsSlideNumbers() throws Exception {
         byte[] pptxBytes;
@@ -125,4 +173,31 @@ public class DocumentServiceTest {
         assertEquals(1, segments.size());
         assertEquals("txt", segments.get(0).getMetadata().get("source_type"));
     }
+
+    @Test
+    void parseTxt_splitsLargeFilesAtParagraphBoundaries() throws Exception {
+        String text = "alpha one\nalpha two\n\nbeta one\n\ngamma one\n";
+        MockMultipartFile file = new MockMultipartFile("files", "notes.md", "text/markdown", text.getBytes(StandardCharsets.UTF_8));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "textSegmentChars", 8);
+        List<DocumentSegment> segments = service.parseDocument(file);
+
+        assertEquals(3, segments.size());
+        assertEquals("alpha one\nalpha two", segments.get(0).getContent());
+        assertEquals("beta one", segments.get(1).getContent());
+        assertEquals("gamma one", segments.get(2).getContent());
+        assertEquals("md", segments.get(2).getMetadata().get("source_type"));
+    }
+
+    @Test
+    void parseTxt_replacesInvalidUtf8Bytes() throws Exception {
+        // "中文" 的 GBK 编码不是合法的 UTF-8
+        byte[] bytes = {'o', 'k', ' ', (byte) 0xD6, (byte) 0xD0, (byte) 0xCE, (byte) 0xC4, '\n'};
+        MockMultipartFile file = new MockMultipartFile("files", "gbk.txt", "text/plain", bytes);
+        DocumentService service = new DocumentService();
+        List<DocumentSegment> segments = service.parseDocument(file);
+
+        assertEquals(1, segments.size());
+        assertTrue(segments.get(0).getContent().startsWith("ok \uFFFD"));
+    }
 }
@@ -0,0 +1,58 @@
+package com.bmad.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingBuffersTest {
+
+    @Test
+    void add_encodesLikeStringGetBytes() {
+        Random random = new Random(11);
+        String[] pieces = {"a", "Lucene ", "检索", "é", "\u0000", "😀", "\uD83D", "\uDE00", "￿", "\n"};
+        EmbeddingBuffers buffers = new EmbeddingBuffers();
+        for (int round = 0; round < 50; round++) {
+            buffers.clear();
+            String[] texts = new String[random.nextInt(80) + 1];
+            for (int t = 0; t < texts.length; t++) {
+                StringBuilder sb = new StringBuilder();
+                int count = random.nextInt(2000);
+                for (int i = 0; i < count; i++) {
+                    sb.append(pieces[random.nextInt(pieces.length)]);
+                }
+                texts[t] = sb.toString();
+                buffers.add(texts[t]);
+            }
+
+            assertEquals(texts.length, buffers.count());
+            assertTrue(buffers.text().isDirect());
+            for (int t = 0; t < texts.length; t++) {
+                int start = buffers.offsets().get(t);
+                int end = buffers.offsets().get(t + 1);
+                byte[] actual = new byte[end - start];
+                buffers.text().get(start, actual);
+                assertArrayEquals(texts[t].getBytes(StandardCharsets.UTF_8), actual, texts[t]);
+            }
+        }
+    }
+
+    @Test
+    void vectors_growAndAreReused() {
+        EmbeddingBuffers buffers = new EmbeddingBuffers();
+        FloatBuffer small = buffers.vectors(128);
+        assertTrue(small.isDirect());
+        assertTrue(small.capacity() >= 128);
+        assertSame(small, buffers.vectors(64));
+        assertFalse(buffers.oversized());
+
+        ByteBuffer text = buffers.text();
+        buffers.add("x".repeat(EmbeddingBuffers.MAX_RETAINED_BYTES));
+        assertNotSame(text, buffers.text());
+        assertTrue(buffers.oversized());
+    }
+}
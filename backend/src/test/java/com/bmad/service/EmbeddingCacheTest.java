@@ -0,0 +1,88 @@
+package com.bmad.service;
+
+import com.bmad.config.ModelConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddingCache newCache(String modelPath) {
+        return newCache(modelPath, 2, 1024 * 1024);
+    }
+
+    private EmbeddingCache newCache(String modelPath, int memoryEntries, long diskMaxBytes) {
+        ModelConfig config = new ModelConfig();
+        config.setPath(modelPath);
+        EmbeddingCache cache = new EmbeddingCache(config, memoryEntries, tempDir.toString(), diskMaxBytes);
+        cache.open();
+        return cache;
+    }
+
+    @Test
+    void get_normalizesWhitespaceAndCountsHits() {
+        EmbeddingCache cache = newCache("model-a.gguf");
+        assertNull(cache.get("hello world"));
+
+        cache.put("hello world", new float[]{1f, 2f, 3f});
+        assertArrayEquals(new float[]{1f, 2f, 3f}, cache.get("  hello \n world "));
+
+        assertEquals(1L, cache.getStats().get("memoryHits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+        cache.close();
+    }
+
+    @Test
+    void diskTier_survivesReopenAndIsScopedByModel() {
+        EmbeddingCache cache = newCache("model-a.gguf");
+        cache.put("boilerplate", new float[]{0.5f, 0.25f});
+        cache.close();
+
+        EmbeddingCache reopened = newCache("model-a.gguf");
+        assertArrayEquals(new float[]{0.5f, 0.25f}, reopened.get("boilerplate"));
+        assertEquals(1L, reopened.getStats().get("diskHits"));
+        reopened.close();
+
+        EmbeddingCache otherModel = newCache("model-b.gguf");
+        assertNull(otherModel.get("boilerplate"));
+        assertEquals(0, otherModel.getStats().get("diskEntries"));
+        otherModel.close();
+
+        // 切换模型时磁盘层已重置，切回原模型也不再保留旧向量
+        EmbeddingCache back = newCache("model-a.gguf");
+        assertNull(back.get("boilerplate"));
+        back.close();
+    }
+
+    @Test
+    void diskTier_evictsLeastRecentlyUsedWhenFull() {
+        // 头部 48 字节，每条记录 32 + 4 + 4 * 4 = 52 字节，容量为 10 条记录
+        EmbeddingCache cache = newCache("model-a.gguf", 0, 48 + 52 * 10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("text-" + i, new float[]{i, i, i, i});
+        }
+        assertEquals(10, cache.getStats().get("diskEntries"));
+        assertNotNull(cache.get("text-0"));
+
+        cache.put("text-10", new float[]{10, 10, 10, 10});
+        int entries = (Integer) cache.getStats().get("diskEntries");
+        assertTrue(entries < 10, "写满后应淘汰旧记录");
+        assertArrayEquals(new float[]{0, 0, 0, 0}, cache.get("text-0"));
+        assertArrayEquals(new float[]{10, 10, 10, 10}, cache.get("text-10"));
+        assertNull(cache.get("text-1"));
+        cache.close();
+
+        // 压实后的记录在重新打开后依然可读
+        EmbeddingCache reopened = newCache("model-a.gguf", 0, 48 + 52 * 10);
+        assertEquals(entries, reopened.getStats().get("diskEntries"));
+        assertArrayEquals(new float[]{9, 9, 9, 9}, reopened.get("text-9"));
+        assertArrayEquals(new float[]{0, 0, 0, 0}, reopened.get("text-0"));
+        reopened.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.bmad.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void sweep_deletesOnlyOldUnreferencedBlobs() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(root.toString());
+        store.init();
+        String live = store.put(new byte[]{1});
+        String orphan = store.put(new byte[]{2});
+        String fresh = store.put(new byte[]{3});
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000L);
+        Files.setLastModifiedTime(store.get(live), old);
+        Files.setLastModifiedTime(store.get(orphan), old);
+
+        int deleted = store.sweep(Set.of(live), System.currentTimeMillis() - 60_000L);
+
+        assertEquals(1, deleted);
+        assertNotNull(store.get(live));
+        assertNull(store.get(orphan));
+        // 宽限期内的图片可能属于正在入库的文档
+        assertNotNull(store.get(fresh));
+    }
+
+    @Test
+    void put_refreshesModificationTimeOfExistingBlob() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(root.toString());
+        store.init();
+        String id = store.put(new byte[]{4});
+        Files.setLastModifiedTime(store.get(id), FileTime.fromMillis(System.currentTimeMillis() - 3_600_000L));
+
+        assertEquals(id, store.put(new byte[]{4}));
+        assertEquals(0, store.sweep(Set.of(), System.currentTimeMillis() - 60_000L));
+        assertNotNull(store.get(id));
+    }
+}
@@ -0,0 +1,311 @@
+package com.bmad.service;
+
+import com.bmad.config.FusionConfig;
+import com.bmad.config.ModelConfig;
+import com.bmad.config.VectorIndexConfig;
+import com.bmad.model.DocumentCatalogEntry;
+import com.bmad.model.DocumentSegment;
+import com.bmad.model.Durability;
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResult;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在临时目录中脱离 Spring 容器构建 IndexService，向量化使用按词哈希的确定性替身。
+ */
+public class IndexServiceTest {
+
+    // 约 600 字符：切出一个父分块与多个子分块
+    private static final String LONG_TEXT = ("alpha bravo charlie delta echo foxtrot golf hotel india juliet kilo lima mike "
+            + "november oscar papa quebec romeo sierra tango uniform victor whiskey xray yankee zulu. ").repeat(4);
+
+    @TempDir
+    Path tempDir;
+
+    private final List<IndexService> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws IOException {
+        for (IndexService index : opened) {
+            index.cleanup();
+        }
+    }
+
+    @Test
+    void indexDocument_upsertsByFilenameAndSkipsUnchangedContent() throws Exception {
+        IndexService index = newIndexService(50);
+        assertTrue(index.indexDocument("notes.txt", "h1", List.of(new DocumentSegment("alpha bravo charlie"))));
+        assertEquals("h1", index.getIndexedContentHash("notes.txt"));
+        assertFalse(index.indexDocument("notes.txt", "h1", List.of(new DocumentSegment("alpha bravo charlie"))));
+
+        assertTrue(index.indexDocument("notes.txt", "h2", List.of(new DocumentSegment("delta echo foxtrot"))));
+        assertEquals("h2", index.getIndexedContentHash("notes.txt"));
+        assertTrue(index.search("charlie", null, SearchMode.KEYWORD).getResults().isEmpty());
+        List<SearchResult> results = index.search("foxtrot", null, SearchMode.KEYWORD).getResults();
+        assertEquals(1, results.size());
+        assertEquals("delta echo foxtrot", results.get(0).getContent());
+    }
+
+    @Test
+    void deleteDocument_removesOnlyThatFile() throws Exception {
+        IndexService index = newIndexService(50);
+        index.indexDocument("a.txt", "ha", List.of(new DocumentSegment("shared alpha")));
+        index.indexDocument("b.txt", "hb", List.of(new DocumentSegment("shared bravo")));
+
+        assertTrue(index.deleteDocument("a.txt"));
+        assertFalse(index.deleteDocument("a.txt"));
+        assertNull(index.getIndexedContentHash("a.txt"));
+        assertEquals("hb", index.getIndexedContentHash("b.txt"));
+        List<SearchResult> results = index.search("shared", null, SearchMode.KEYWORD).getResults();
+        assertEquals(List.of("b.txt"), results.stream().map(SearchResult::getFilename).toList());
+    }
+
+    @Test
+    void search_resolvesParentTextForChildHits() throws Exception {
+        IndexService index = newIndexService(50);
+        index.indexDocument("long.txt", "h", List.of(new DocumentSegment(LONG_TEXT)));
+
+        // 同一父分块的多个子分块命中合并为一条结果，正文取自父文档
+        List<SearchResult> results = index.search("kilo lima mike", null, SearchMode.VECTOR).getResults();
+        assertEquals(1, results.size());
+        SearchResult hit = results.get(0);
+        assertEquals("long.txt", hit.getFilename());
+        assertEquals("long.txt#s0p0", hit.getParentId());
+        assertEquals(LONG_TEXT.trim(), hit.getContent().trim());
+        assertNotNull(hit.getChildContent());
+        assertTrue(hit.getChildContent().length() < hit.getContent().length());
+    }
+
+    @Test
+    void search_loadsOnlyRequestedFields() throws Exception {
+        IndexService index = newIndexService(50);
+        index.indexDocument("long.txt", "h", List.of(new DocumentSegment(LONG_TEXT)));
+
+        SearchResult childOnly = index.search("kilo lima mike", Set.of("filename", "child_content"), SearchMode.VECTOR)
+                .getResults().get(0);
+        assertEquals("long.txt", childOnly.getFilename());
+        assertNotNull(childOnly.getChildContent());
+        assertNull(childOnly.getContent());
+        assertNull(childOnly.getParentId());
+
+        SearchResult parentOnly = index.search("kilo lima mike", Set.of("content"), SearchMode.VECTOR)
+                .getResults().get(0);
+        assertNotNull(parentOnly.getContent());
+        assertNull(parentOnly.getFilename());
+        assertNull(parentOnly.getChildContent());
+    }
+
+    @Test
+    void hybridSearch_fusesKeywordAndVectorHitsOfSameParent() throws Exception {
+        IndexService index = newIndexService(50);
+        index.indexDocument("long.txt", "h", List.of(new DocumentSegment(LONG_TEXT)));
+
+        List<SearchResult> results = index.search("quebec romeo", null, SearchMode.HYBRID).getResults();
+        assertEquals(1, results.size());
+        assertNotNull(results.get(0).getVectorScore());
+        assertNotNull(results.get(0).getKeywordScore());
+    }
+
+    @Test
+    void getCatalog_listsRegisteredFilesFromDocValues() throws Exception {
+        IndexService index = newIndexService(50);
+        index.indexDocument("b.md", "hb", List.of(new DocumentSegment("bravo")));
+        index.indexDocument("a.txt", "ha", List.of(new DocumentSegment(LONG_TEXT)));
+
+        List<DocumentCatalogEntry> catalog = index.getCatalog();
+        assertEquals(List.of("a.txt", "b.md"), catalog.stream().map(DocumentCatalogEntry::getFilename).toList());
+        assertTrue(catalog.get(0).getChunkCount() > 1);
+        assertEquals(1, catalog.get(1).getChunkCount());
+        assertEquals("txt", catalog.get(0).getSourceType());
+        assertEquals("md", catalog.get(1).getSourceType());
+        assertTrue(catalog.get(0).getIngestedAt() > 0);
+        // 索引未变化时复用上次的目录
+        assertSame(catalog, index.getCatalog());
+
+        index.deleteDocument("b.md");
+        assertEquals(List.of("a.txt"), index.getCatalog().stream().map(DocumentCatalogEntry::getFilename).toList());
+    }
+
+    @Test
+    void commit_groupsConcurrentDurableWritesIntoOneLuceneCommit() throws Exception {
+        IndexService index = newIndexService(300);
+        index.indexDocument("seed.txt", "h", List.of(new DocumentSegment("seed")));
+        long generation = commitGeneration();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            write(index, "file" + i + ".txt", "h" + i, "content " + i);
+            futures.add(index.commit(Durability.DURABLE));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(generation + 1, commitGeneration());
+        assertEquals(4, index.getCatalog().size());
+    }
+
+    @Test
+    void commit_visibleMakesWritesSearchableBeforeLuceneCommit() throws Exception {
+        IndexService index = newIndexService(60_000);
+        write(index, "a.txt", "h", "visible content");
+        index.commit(Durability.VISIBLE).join();
+
+        assertEquals("h", index.getIndexedContentHash("a.txt"));
+        assertEquals(-1, commitGeneration());
+    }
+
+    @Test
+    void init_replaysWriteAheadLogAfterCrash() throws Exception {
+        IndexService first = newIndexService(50);
+        first.indexDocument("a.txt", "h1", List.of(new DocumentSegment("original text")));
+        first.cleanup();
+        opened.remove(first);
+
+        // 提交间隔足够长，写入只到达写前日志与 NRT 搜索器，随后模拟进程崩溃
+        IndexService second = newIndexService(60_000);
+        write(second, "a.txt", "h2", "replaced text");
+        write(second, "b.txt", "h3", "new file");
+        second.commit(Durability.VISIBLE).join();
+        assertEquals("h2", second.getIndexedContentHash("a.txt"));
+        crash(second);
+
+        IndexService recovered = newIndexService(50);
+        assertEquals("h2", recovered.getIndexedContentHash("a.txt"));
+        assertEquals("h3", recovered.getIndexedContentHash("b.txt"));
+        assertEquals(List.of("a.txt", "b.txt"),
+                recovered.getCatalog().stream().map(DocumentCatalogEntry::getFilename).toList());
+        assertTrue(recovered.search("original", null, SearchMode.KEYWORD).getResults().isEmpty());
+    }
+
+    private IndexService newIndexService(long maxCommitDelayMs) throws IOException {
+        FusionConfig fusionConfig = new FusionConfig();
+        ImageBlobStore blobStore = new ImageBlobStore(tempDir.resolve("blob_store").toString());
+        blobStore.init();
+
+        IndexService index = new IndexService();
+        set(index, "embeddingService", new HashingEmbeddingService(32));
+        set(index, "imageBlobStore", blobStore);
+        set(index, "fusionConfig", fusionConfig);
+        set(index, "rankFusion", new RankFusion(fusionConfig));
+        set(index, "vectorIndexConfig", new VectorIndexConfig());
+        set(index, "indexPath", tempDir.resolve("index").toString());
+        set(index, "maxStaleSec", 1.0);
+        set(index, "minStaleSec", 0.1);
+        set(index, "maxCommitDelayMs", maxCommitDelayMs);
+        set(index, "maxPendingDocs", 5000);
+        set(index, "walEnabled", true);
+        set(index, "walPath", tempDir.resolve("wal").toString());
+        index.init();
+        opened.add(index);
+        return index;
+    }
+
+    private static void write(IndexService index, String filename, String hash, String text) throws IOException {
+        List<Document> docs = index.buildChunkDocuments(filename, List.of(new DocumentSegment(text)));
+        index.embedDocuments(docs);
+        index.replaceDocuments(filename, hash, docs);
+    }
+
+    private long commitGeneration() throws IOException {
+        try (Directory directory = FSDirectory.open(tempDir.resolve("index"))) {
+            return SegmentInfos.getLastCommitGeneration(directory);
+        }
+    }
+
+    /**
+     * 模拟进程崩溃：停止后台线程并回滚 IndexWriter，丢弃尚未提交的写入，不执行 cleanup 中的最终提交。
+     */
+    private void crash(IndexService index) throws Exception {
+        opened.remove(index);
+        ((ExecutorService) get(index, "commitExecutor")).shutdownNow();
+        ((ExecutorService) get(index, "searchExecutor")).shutdownNow();
+        ((ControlledRealTimeReopenThread<?>) get(index, "reopenThread")).close();
+        ((IndexWriter) get(index, "writer")).rollback();
+        ((IndexWal) get(index, "wal")).close();
+    }
+
+    private static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法设置字段 " + name, e);
+        }
+    }
+
+    private static Object get(Object target, String name) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    /**
+     * 确定性向量化替身：按词做特征哈希后归一化，不加载原生库。
+     */
+    private static class HashingEmbeddingService extends EmbeddingService {
+
+        private final int dimension;
+
+        HashingEmbeddingService(int dimension) {
+            super(new EmbeddingCache(new ModelConfig(), 0, "", 0));
+            this.dimension = dimension;
+        }
+
+        @Override
+        public float[] getEmbedding(String text) {
+            float[] vector = new float[dimension];
+            for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    vector[Math.floorMod(token.hashCode() * 0x9E3779B1, dimension)] += 1f;
+                }
+            }
+            float norm = 0f;
+            for (float v : vector) {
+                norm += v * v;
+            }
+            if (norm == 0f) {
+                vector[0] = 1f;
+                return vector;
+            }
+            float inv = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= inv;
+            }
+            return vector;
+        }
+
+        @Override
+        public List<float[]> embedBatch(List<String> texts) {
+            List<float[]> vectors = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                vectors.add(getEmbedding(text));
+            }
+            return vectors;
+        }
+
+        @Override
+        public int getDimension() {
+            return dimension;
+        }
+    }
+}
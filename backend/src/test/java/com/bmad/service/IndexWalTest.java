@@ -0,0 +1,121 @@
+package com.bmad.service;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexWalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static FieldType docsOnly() {
+        FieldType type = new FieldType();
+        type.setTokenized(true);
+        type.setIndexOptions(IndexOptions.DOCS);
+        type.setOmitNorms(true);
+        type.freeze();
+        return type;
+    }
+
+    private static Document childDoc(String text) {
+        Document doc = new Document();
+        doc.add(new StringField("filename_key", "a.txt", Field.Store.NO));
+        doc.add(new TextField("child_content", text, Field.Store.YES));
+        doc.add(new IntField("chunk_id", 7, Field.Store.YES));
+        doc.add(new KnnFloatVectorField("vector", new float[]{0.5f, -1f}, VectorSimilarityFunction.COSINE));
+        doc.add(new Field("content_ngram", text, docsOnly()));
+        return doc;
+    }
+
+    @Test
+    void readAll_replaysUncommittedOperationsAfterRestart() throws Exception {
+        IndexWal wal = new IndexWal(tempDir, docsOnly());
+        wal.append(IndexWal.Op.REPLACE, "a.txt", List.of(childDoc("第一版")));
+        wal.append(IndexWal.Op.DELETE, "b.txt", null);
+        wal.sync();
+        wal.close();
+
+        // 模拟崩溃后重启：新实例读取此前未提交的日志段
+        IndexWal reopened = new IndexWal(tempDir, docsOnly());
+        List<IndexWal.Entry> entries = reopened.readAll();
+        assertEquals(2, entries.size());
+        assertEquals(IndexWal.Op.REPLACE, entries.get(0).op());
+        assertEquals("a.txt", entries.get(0).key());
+
+        Document doc = entries.get(0).docs().get(0);
+        assertEquals("第一版", doc.get("child_content"));
+        assertEquals(7, doc.getField("chunk_id").numericValue().intValue());
+        assertArrayEquals(new float[]{0.5f, -1f}, ((KnnFloatVectorField) doc.getField("vector")).vectorValue());
+        assertEquals(IndexOptions.DOCS, doc.getField("content_ngram").fieldType().indexOptions());
+        assertEquals(IndexWal.Op.DELETE, entries.get(1).op());
+
+        // 提交成功后截断，已持久化的段不再重放
+        reopened.truncate(reopened.roll());
+        reopened.close();
+        assertTrue(new IndexWal(tempDir, docsOnly()).readAll().isEmpty());
+    }
+
+    @Test
+    void readAll_dropsTornTailRecord() throws Exception {
+        IndexWal wal = new IndexWal(tempDir, docsOnly());
+        wal.append(IndexWal.Op.REPLACE, "a.txt", List.of(childDoc("完整记录")));
+        wal.append(IndexWal.Op.REPLACE, "a.txt", List.of(childDoc("半截记录")));
+        wal.close();
+
+        // 截掉最后一条记录的末尾若干字节，模拟写入过程中崩溃
+        Path segment;
+        try (var files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        List<IndexWal.Entry> entries = new IndexWal(tempDir, docsOnly()).readAll();
+        assertEquals(1, entries.size());
+        assertEquals("完整记录", entries.get(0).docs().get(0).get("child_content"));
+    }
+
+    @Test
+    void readAll_stopsAtUnknownOperation() throws Exception {
+        IndexWal wal = new IndexWal(tempDir, docsOnly());
+        wal.append(IndexWal.Op.DELETE, "a.txt", null);
+        wal.close();
+        Path segment;
+        try (var files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] valid = Files.readAllBytes(segment);
+
+        // 校验和正确但操作类型未知的记录，其后再跟一条有效记录
+        byte[] payload = {9, 0, 0, 0, 0, 0, 0};
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer unknown = ByteBuffer.allocate(12 + payload.length).putInt(payload.length).putLong(crc.getValue()).put(payload);
+        Files.write(segment, unknown.array(), StandardOpenOption.APPEND);
+        Files.write(segment, valid, StandardOpenOption.APPEND);
+
+        List<IndexWal.Entry> entries = new IndexWal(tempDir, docsOnly()).readAll();
+        assertEquals(1, entries.size());
+        assertEquals("a.txt", entries.get(0).key());
+    }
+}
@@ -0,0 +1,88 @@
+package com.bmad.service;
+
+import com.bmad.model.SearchMode;
+import com.bmad.model.SearchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryResultCacheTest {
+
+    @Test
+    void get_hitsWithinGenerationAndMissesAfterRefresh() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        QueryResultCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return new SearchResponse();
+        };
+
+        cache.get(QueryResultCache.key("lucene  search", Set.of("b", "a"), SearchMode.HYBRID), 1, loader);
+        cache.get(QueryResultCache.key(" lucene search ", Set.of("a", "b"), SearchMode.HYBRID), 1, loader);
+        assertEquals(1, loads.get());
+
+        cache.get(QueryResultCache.key("lucene search", Set.of("a", "b"), SearchMode.KEYWORD), 1, loader);
+        assertEquals(2, loads.get());
+
+        cache.get(QueryResultCache.key("lucene search", Set.of("a", "b"), SearchMode.HYBRID), 2, loader);
+        assertEquals(3, loads.get());
+        assertEquals(1L, cache.getHits());
+        assertEquals(3L, cache.getMisses());
+    }
+
+    @Test
+    void get_coalescesConcurrentIdenticalQueries() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        QueryResultCache.Key key = QueryResultCache.key("q", null, SearchMode.HYBRID);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        SearchResponse loaded = new SearchResponse();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<SearchResponse> first = pool.submit(() -> cache.get(key, 1, () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return loaded;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<SearchResponse> second = pool.submit(() -> cache.get(key, 1, () -> {
+                loads.incrementAndGet();
+                return new SearchResponse();
+            }));
+            while (cache.getCoalesced() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertSame(loaded, first.get(5, TimeUnit.SECONDS));
+            assertSame(loaded.getResults(), second.get(5, TimeUnit.SECONDS).getResults());
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_doesNotCacheFailures() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        QueryResultCache.Key key = QueryResultCache.key("q", null, SearchMode.VECTOR);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(key, 1, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        SearchResponse response = cache.get(key, 1, SearchResponse::new);
+        assertNotNull(response);
+        assertEquals(2L, cache.getMisses());
+    }
+}
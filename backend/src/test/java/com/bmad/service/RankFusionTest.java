@@ -0,0 +1,76 @@
+package com.bmad.service;
+
+import com.bmad.config.FusionConfig;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RankFusionTest {
+
+    private static TopDocs topDocs(float[][] docAndScore) {
+        ScoreDoc[] scoreDocs = new ScoreDoc[docAndScore.length];
+        for (int i = 0; i < docAndScore.length; i++) {
+            scoreDocs[i] = new ScoreDoc((int) docAndScore[i][0], docAndScore[i][1]);
+        }
+        return new TopDocs(new TotalHits(scoreDocs.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+    }
+
+    @Test
+    void rrf_prefersDocumentsFoundByBothLegs() {
+        FusionConfig config = new FusionConfig();
+        RankFusion fusion = new RankFusion(config);
+
+        // BM25 得分远大于余弦得分，RRF 只看名次
+        TopDocs vector = topDocs(new float[][]{{1, 0.91f}, {2, 0.90f}});
+        TopDocs keyword = topDocs(new float[][]{{3, 25.0f}, {2, 12.0f}});
+        List<RankFusion.FusedHit> hits = fusion.fuse(vector, keyword, false);
+
+        assertEquals(3, hits.size());
+        assertEquals(2, hits.get(0).doc());
+        assertEquals(2f / 62f, hits.get(0).score(), 1e-6);
+        assertEquals(0.90f, hits.get(0).vectorScore());
+        assertEquals(12.0f, hits.get(0).keywordScore());
+    }
+
+    @Test
+    void weighted_normalizesEachLegAndHonorsKeywordRequired() {
+        FusionConfig config = new FusionConfig();
+        config.setMode("weighted");
+        config.setVectorWeight(2.0f);
+        RankFusion fusion = new RankFusion(config);
+
+        TopDocs vector = topDocs(new float[][]{{1, 0.9f}, {2, 0.5f}});
+        TopDocs keyword = topDocs(new float[][]{{2, 10.0f}, {3, 5.0f}});
+        List<RankFusion.FusedHit> hits = fusion.fuse(vector, keyword, true);
+
+        assertEquals(2, hits.size());
+        assertEquals(2, hits.get(0).doc());
+        assertEquals(1.0f, hits.get(0).score(), 1e-6);
+        assertEquals(3, hits.get(1).doc());
+        assertNull(hits.get(1).vectorScore());
+    }
+
+    @Test
+    void grouped_fusesParentKeywordHitWithChildVectorHit() {
+        RankFusion fusion = new RankFusion(new FusionConfig());
+        // 父文档 10 的子文档为 11、12；子文档 21 属于另一个父分块
+        Map<Integer, String> parents = Map.of(10, "a#s0p0", 11, "a#s0p0", 12, "a#s0p0", 21, "a#s0p1");
+
+        TopDocs vector = topDocs(new float[][]{{11, 0.9f}, {12, 0.85f}, {21, 0.8f}});
+        TopDocs keyword = topDocs(new float[][]{{10, 7.0f}});
+        List<RankFusion.FusedHit> hits = fusion.fuse(vector, keyword, true, parents::get);
+
+        assertEquals(1, hits.size());
+        assertEquals(11, hits.get(0).doc());
+        // 两路各计一次名次第一，子分块 12 不重复加分
+        assertEquals(2f / 61f, hits.get(0).score(), 1e-6);
+        assertEquals(0.9f, hits.get(0).vectorScore());
+        assertEquals(7.0f, hits.get(0).keywordScore());
+    }
+}
@@ -0,0 +1,49 @@
+package com.bmad.service;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubstringNGramAnalyzerTest {
+
+    private static final String FIELD = "content" + SubstringNGramAnalyzer.FIELD_SUFFIX;
+
+    private static int count(IndexSearcher searcher, String text) throws Exception {
+        Query query = SubstringNGramAnalyzer.buildSubstringQuery(FIELD, text);
+        return query == null ? -1 : searcher.count(query);
+    }
+
+    @Test
+    void substringQuery_matchesInsideWordsAndCjkText() throws Exception {
+        try (Directory dir = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new SubstringNGramAnalyzer()))) {
+            Document doc = new Document();
+            doc.add(new TextField(FIELD, "Configure the Elasticsearch cluster. 向量检索引擎", Field.Store.NO));
+            writer.addDocument(doc);
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                assertEquals(1, count(searcher, "lastics"));
+                assertEquals(1, count(searcher, "FIGUR"));
+                assertEquals(1, count(searcher, "检索"));
+                assertEquals(1, count(searcher, "量检索引"));
+                assertEquals(0, count(searcher, "elastix"));
+                // 跨越空白的片段不会被拼接成 "ecl"
+                assertEquals(0, count(searcher, "ecl"));
+                // 单字符无法切出片段
+                assertEquals(-1, count(searcher, "e"));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.bmad.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextChunkerTest {
+
+    @Test
+    void chunks_matchRegexImplementation() {
+        Random random = new Random(7);
+        String[] pieces = {"word", "数据", "检索", "a", "Lucene", "3.14", ".", "!", "?", "。", "！", "？",
+                " ", " ", " ", "  ", "\n", "\n\n", "\n \n", "\t", "\r\n", " \n\t\n ", "\u0001"};
+        int[][] settings = {{800, 100}, {300, 50}, {40, 10}, {20, 30}, {10, 0}};
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int count = random.nextInt(400);
+            for (int i = 0; i < count; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String input = text.toString();
+            for (int[] setting : settings) {
+                List<String> expected = regexChunking(input, setting[0], setting[1]);
+                List<String> actual = new ArrayList<>();
+                for (TextChunker.Chunk chunk : new TextChunker(setting[0], setting[1]).chunks(input)) {
+                    actual.add(chunk.toString());
+                }
+                assertEquals(expected, actual, "maxChars=" + setting[0] + " overlap=" + setting[1] + " text=" + input);
+            }
+        }
+    }
+
+    @Test
+    void chunks_reportOffsetsIntoSource() {
+        String text = "First paragraph.\n\nSecond one is longer. It has two sentences.";
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        new TextChunker(25, 0).chunks(text).forEach(chunks::add);
+
+        assertEquals(3, chunks.size());
+        for (TextChunker.Chunk chunk : chunks) {
+            assertEquals(chunk.toString(), text.substring(chunk.start(), chunk.end()));
+        }
+        assertEquals("It has two sentences.", chunks.get(2).toString());
+    }
+
+    @Test
+    void chunks_collapseWhitespaceBetweenSentences() {
+        String text = "One two.\tThree four!\n  Five six?";
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        new TextChunker(25, 8).chunks(text).forEach(chunks::add);
+
+        assertEquals("One two. Three four!", chunks.get(0).toString());
+        assertEquals(0, chunks.get(0).start());
+        assertEquals(text.indexOf('!') + 1, chunks.get(0).end());
+        assertEquals("e four! Five six?", chunks.get(1).toString());
+    }
+
+    /**
+     * 原先 IndexService 中基于正则的分块实现，作为边界一致性的基准。
+     */
+    private static List<String> regexChunking(String text, int maxChars, int overlap) {
+        List<String> result = new ArrayList<>();
+        if (text == null || text.isEmpty()) return result;
+        for (String para : text.split("\\n\\s*\\n")) {
+            para = para.trim();
+            if (para.isEmpty()) continue;
+            if (para.length() <= maxChars) {
+                result.add(para);
+                continue;
+            }
+            List<String> sentences = new ArrayList<>();
+            for (String part : para.split("(?<=[。！？.!?.])\\s+")) {
+                if (!part.trim().isEmpty()) {
+                    sentences.add(part.trim());
+                }
+            }
+            StringBuilder currentChunk = new StringBuilder();
+            for (String sentence : sentences) {
+                if (currentChunk.length() + sentence.length() > maxChars && currentChunk.length() > 0) {
+                    result.add(currentChunk.toString().trim());
+                    int overlapStart = Math.max(0, currentChunk.length() - overlap);
+                    currentChunk = new StringBuilder(currentChunk.substring(overlapStart));
+                }
+                currentChunk.append(sentence).append(" ");
+            }
+            if (currentChunk.length() > 0) {
+                result.add(currentChunk.toString().trim());
+            }
+        }
+        return result;
+    }
+}
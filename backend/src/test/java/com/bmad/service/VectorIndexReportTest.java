@@ -0,0 +1,48 @@
+package com.bmad.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorIndexReportTest {
+
+    private static List<float[]> randomCorpus(int size, int dim) {
+        Random random = new Random(7);
+        List<float[]> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            float[] vector = new float[dim];
+            for (int j = 0; j < dim; j++) {
+                vector[j] = random.nextFloat() * 2 - 1;
+            }
+            corpus.add(vector);
+        }
+        return corpus;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evaluate_reportsRecallAndSizeForEachCandidate() throws Exception {
+        List<VectorIndexReport.Candidate> candidates = List.of(
+                new VectorIndexReport.Candidate("none", 16, 100),
+                new VectorIndexReport.Candidate("int8", 16, 100));
+        Map<String, Object> report = VectorIndexReport.evaluate(randomCorpus(500, 32), 20, 10, candidates);
+
+        assertEquals(500, report.get("vectors"));
+        assertEquals(32, report.get("dimension"));
+        List<Map<String, Object>> results = (List<Map<String, Object>>) report.get("results");
+        assertEquals(2, results.size());
+
+        Map<String, Object> float32 = results.get(0);
+        Map<String, Object> int8 = results.get(1);
+        assertEquals("int8", int8.get("quantization"));
+        // 小语料上 HNSW 接近精确检索，量化后召回率允许略有下降
+        assertTrue((double) float32.get("recall") > 0.9);
+        assertTrue((double) int8.get("recall") > 0.7);
+        assertTrue((long) float32.get("indexBytes") > 0);
+    }
+}
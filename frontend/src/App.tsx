@@ -16,12 +16,24 @@ interface SearchResult {
   filename: string;
   score: number;
   max_raw_score: number;
+  vector_score?: number;
+  keyword_score?: number;
   anchor?: string;
-  image_data?: string;
+  image_id?: string;
 }
 
+interface CatalogEntry {
+  filename: string;
+  chunk_count: number;
+  source_type?: string;
+  ingested_at: number;
+}
+
+const DOC_PAGE_SIZE = 100
+
   const [isSearching, setIsSearching] = useState(false)
-  const [indexedDocs, setIndexedDocs] = useState<string[]>([])
+  const [indexedDocs, setIndexedDocs] = useState<CatalogEntry[]>([])
+  const [docTotal, setDocTotal] = useState(0)
   const [isFetchingDocs, setIsFetchingDocs] = useState(false)
   
   const [searchResults, setSearchResults] = useState<SearchResult[]>([])
@@ -33,14 +45,10 @@ interface SearchResult {
     directory: '',
   } as React.InputHTMLAttributes<HTMLInputElement> & { webkitdirectory?: string; directory?: string }
 
-  // 拟合度计算逻辑：结合原始得分和置信度
+  // 拟合度计算逻辑：融合得分相对于本次最高融合得分的比例
   const calculateFitDegreeValue = (score: number, maxRawScore: number) => {
     if (maxRawScore <= 0) return 0;
-    const baseConfidence = Math.min(100, (score / maxRawScore) * 100);
-    if (maxRawScore < 5.0) {
-      return baseConfidence * (maxRawScore / 5.0);
-    }
-    return baseConfidence;
+    return Math.min(100, (score / maxRawScore) * 100);
   };
 
   const formatFitDegree = (score: number, maxRawScore: number) => {
@@ -56,13 +64,14 @@ interface SearchResult {
   /**
    * 获取所有已索引的文档列表。
    */
-  const fetchIndexedDocs = async () => {
+  const fetchIndexedDocs = async (offset = 0) => {
     setIsFetchingDocs(true)
     try {
-      const response = await fetch('/api/docs/list')
+      const response = await fetch(`/api/docs/list?offset=${offset}&limit=${DOC_PAGE_SIZE}`)
       if (response.ok) {
         const data = await response.json()
-        setIndexedDocs(data)
+        setIndexedDocs(prev => offset === 0 ? data.items : [...prev, ...data.items])
+        setDocTotal(data.total)
       }
     } catch (error) {
       console.error('Failed to fetch indexed documents:', error)
@@ -89,11 +98,11 @@ interface SearchResult {
         body: formData,
       })
       const data = await res.json()
-      if (data.success) {
-        setStatusMessage(`成功处理 ${data.successCount} 个文件！`)
-        fetchIndexedDocs() // 刷新文档列表
+      if (data.jobId) {
+        setStatusMessage(`已提交 ${data.fileCount} 个文件，正在后台解析与索引...`)
+        pollJob(data.jobId)
       } else {
-        setStatusMessage(`部分或全部解析失败 (成功: ${data.successCount}, 失败: ${data.failCount}): ${data.error || '未知错误'}`)
+        setStatusMessage(`上传失败: ${data.error || '未知错误'}`)
       }
     } catch (err) {
       setStatusMessage('上传请求异常')
@@ -101,6 +110,39 @@ interface SearchResult {
     }
   }
 
+  /**
+   * 轮询入库任务状态，直到所有文件处理完成。
+   */
+  const pollJob = async (jobId: string) => {
+    try {
+      const res = await fetch(`/api/docs/jobs/${jobId}`)
+      if (!res.ok) {
+        setStatusMessage('入库任务不存在或已过期')
+        return
+      }
+      const job = await res.json()
+      if (job.status === 'RUNNING') {
+        const done = job.successCount + job.failCount
+        setStatusMessage(`正在处理 ${done}/${job.totalFiles} 个文件...`)
+        setTimeout(() => pollJob(jobId), 1000)
+        return
+      }
+      if (job.failCount === 0) {
+        setStatusMessage(`成功处理 ${job.successCount} 个文件！`)
+      } else {
+        const errors = job.files
+          .filter((f: { stage: string }) => f.stage === 'FAILED')
+          .map((f: { filename: string; error?: string }) => `${f.filename}: ${f.error || '未知错误'}`)
+          .join('; ')
+        setStatusMessage(`部分或全部解析失败 (成功: ${job.successCount}, 失败: ${job.failCount}): ${errors}`)
+      }
+      fetchIndexedDocs() // 刷新文档列表
+    } catch (err) {
+      setStatusMessage('查询入库进度异常')
+      console.error(err)
+    }
+  }
+
   /**
    * 文件选择处理。
    */
@@ -191,6 +233,25 @@ interface SearchResult {
     }
   }
 
+  /**
+   * 从索引中删除单个文件的全部分块。
+   */
+  const handleDeleteDoc = async (filename: string) => {
+    if (!window.confirm(`确定要从索引中删除 ${filename} 吗？`)) return
+    try {
+      const response = await fetch(`/api/docs/file?filename=${encodeURIComponent(filename)}`, { method: 'DELETE' })
+      if (response.ok) {
+        setStatusMessage(`已删除: ${filename}`)
+        fetchIndexedDocs()
+      } else {
+        alert('删除失败')
+      }
+    } catch (error) {
+      console.error('Delete document failed:', error)
+      alert('网络错误，请检查后端状态')
+    }
+  }
+
   /**
    * 接口调用：获取模型状态。
    * 发起 GET 请求到 /api/model/status。
@@ -275,8 +336,8 @@ interface SearchResult {
 
       <div className="card documents-panel">
         <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center' }}>
-          <h3>已解析文档 ({indexedDocs.length})</h3>
-          <button onClick={fetchIndexedDocs} disabled={isFetchingDocs} style={{ fontSize: '12px', padding: '4px 8px' }}>
+          <h3>已解析文档 ({docTotal})</h3>
+          <button onClick={() => fetchIndexedDocs()} disabled={isFetchingDocs} style={{ fontSize: '12px', padding: '4px 8px' }}>
             {isFetchingDocs ? '刷新中...' : '刷新列表'}
           </button>
         </div>
@@ -285,19 +346,28 @@ interface SearchResult {
             <p style={{ color: '#888', textAlign: 'center' }}>暂无已解析文档</p>
           ) : (
             <ul style={{ listStyle: 'none', padding: 0, margin: 0 }}>
-              {indexedDocs.map((doc, idx) => (
-                <li key={idx} style={{ 
+              {indexedDocs.map((doc) => (
+                <li key={doc.filename} style={{ 
                   padding: '6px 10px', 
                   borderBottom: '1px solid #eee',
                   display: 'flex',
                   alignItems: 'center'
                 }}>
                   <span style={{ marginRight: '8px' }}>📄</span>
-                  <span style={{ overflow: 'hidden', textOverflow: 'ellipsis', whiteSpace: 'nowrap' }}>{doc}</span>
+                  <span style={{ overflow: 'hidden', textOverflow: 'ellipsis', whiteSpace: 'nowrap', flex: 1 }} title={new Date(doc.ingested_at).toLocaleString()}>{doc.filename}</span>
+                  <span style={{ color: '#888', fontSize: '12px', marginLeft: '8px' }}>{doc.chunk_count} 块</span>
+                  <button onClick={() => handleDeleteDoc(doc.filename)} title="删除该文件" style={{ fontSize: '12px', padding: '2px 6px', marginLeft: '8px' }}>
+                    删除
+                  </button>
                 </li>
               ))}
             </ul>
           )}
+          {indexedDocs.length < docTotal && (
+            <button onClick={() => fetchIndexedDocs(indexedDocs.length)} disabled={isFetchingDocs} style={{ fontSize: '12px', padding: '4px 8px', marginTop: '6px' }}>
+              加载更多
+            </button>
+          )}
         </div>
       </div>
 
@@ -367,10 +437,10 @@ interface SearchResult {
                   <div style={{ fontSize: '0.9em', color: '#666', marginBottom: '5px' }}>
                     <strong>{result.filename}{result.anchor ? ` (${result.anchor})` : ''}</strong> (Score: {result.score.toFixed(4)}, 拟合度: {formatFitDegree(result.score, result.max_raw_score)})
                   </div>
-                  {result.image_data && (
+                  {result.image_id && (
                     <div style={{ marginBottom: '10px' }}>
                       <img 
-                        src={`data:image/png;base64,${result.image_data}`} 
+                        src={`/api/images/${result.image_id}`} 
                         alt="Search Result" 
                         style={{ maxWidth: '100%', maxHeight: '300px', borderRadius: '4px', border: '1px solid #ddd' }} 
                       />